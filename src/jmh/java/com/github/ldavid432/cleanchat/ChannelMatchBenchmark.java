@@ -0,0 +1,53 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.MAX_CHANNEL_LIST_SIZE;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * findChannelMatch with every channel type holding the maximum number of remembered names
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelMatchBenchmark
+{
+	@Param({"[Channel 127]", "[<col=ff0000>Channel 0</col>]", "[No match here]"})
+	public String channelText;
+
+	private ChannelNameManager channelNameManager;
+
+	@Setup
+	public void setUp()
+	{
+		channelNameManager = new ChannelNameManager();
+		for (int i = 0; i < MAX_CHANNEL_LIST_SIZE; i++)
+		{
+			channelNameManager.addName(channelNameManager.getClanNames(), "Clan " + i);
+			channelNameManager.addName(channelNameManager.getGuestClanNames(), "Guest " + i);
+			channelNameManager.addName(channelNameManager.getFriendsChatNames(), "Friends " + i);
+			channelNameManager.addName(channelNameManager.getGroupIronNames(), "Channel " + i);
+		}
+	}
+
+	@Benchmark
+	public Pair<ChatChannel, String> findChannelMatch()
+	{
+		return ChatChannel.findChannelMatch(channelText, channelNameManager);
+	}
+}
@@ -0,0 +1,53 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatTab;
+import com.github.ldavid432.cleanchat.sim.FakeConfig;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The block decision ChatBlocker makes for each chatFilterCheck, without its per-message cache
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatBlockBenchmark
+{
+	@Param({
+		"<col=0000ff>Welcome to Old School RuneScape.</col>",
+		"Smashing!",
+		"Somebody said something entirely ordinary in the chat that no block rule matches at all",
+	})
+	public String message;
+
+	private CleanChatConfigSnapshot config;
+	private ChannelNameManager channelNameManager;
+
+	@Setup
+	public void setUp()
+	{
+		config = CleanChatConfigSnapshot.of(FakeConfig.defaults(CleanChatChannelsConfig.class));
+		channelNameManager = new ChannelNameManager();
+		channelNameManager.addName(channelNameManager.getClanNames(), "My Clan");
+		channelNameManager.addName(channelNameManager.getFriendsChatNames(), "My Friends");
+	}
+
+	@Benchmark
+	public boolean shouldBlock()
+	{
+		return ChatBlocker.shouldBlock(config, channelNameManager, ChatTab.ALL, message, "[My Clan]");
+	}
+}
@@ -0,0 +1,158 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.overlay.ChatColorBarOverlay;
+import com.github.ldavid432.cleanchat.sim.FakeConfig;
+import com.github.ldavid432.cleanchat.sim.FakeWidget;
+import com.github.ldavid432.cleanchat.sim.FieldInjector;
+import com.github.ldavid432.cleanchat.sim.SimulatedMessage;
+import com.github.ldavid432.cleanchat.sim.SyntheticHistory;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a rebuild and of an overlay frame against the size of the chat history, with a mix of public, clan, friends chat and
+ * GIM traffic. Run with the gc profiler (the default for ./gradlew jmh) so gc.alloc.rate.norm gives the bytes per rebuild or frame
+ * next to the time, and compare the sizes to see how each one scales.
+ * Rebuild times and gc.alloc.rate.norm include the simulated game laying out its widgets, which is linear in the history size by itself.
+ * The plugin's own share of each rebuild is reported separately as pluginNanosPerRebuild and pluginBytesPerRebuild, those are the ones
+ * to compare for superlinear growth.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryScalingBenchmark
+{
+	// Enough new messages to cycle through that the same text doesn't arrive twice in a row
+	private static final int NEW_MESSAGES = 1024;
+
+	@Param({"50", "200", "1000", "5000", "20000"})
+	public int messages;
+
+	private ChatboxSimulator simulator;
+	private ChatColorBarOverlay colorBarOverlay;
+	private Graphics2D graphics;
+
+	private List<SimulatedMessage> newMessages;
+	private int nextNewMessage = 0;
+
+	@Setup
+	public void setUp()
+	{
+		simulator = new ChatboxSimulator(FakeConfig.of(CleanChatChannelsConfig.class, Map.of("isColorBarEnabled", true)));
+		simulator.addChannelName(ChatChannel.CLAN, SyntheticHistory.CLAN);
+		simulator.addChannelName(ChatChannel.FRIENDS_CHAT, SyntheticHistory.FRIENDS_CHAT);
+		simulator.addChannelName(ChatChannel.GROUP_IRON, SyntheticHistory.GROUP_IRON);
+		simulator.addChannelName(ChatChannel.GUEST_CLAN, SyntheticHistory.GUEST_CLAN);
+		simulator.addMessages(SyntheticHistory.generate(messages, 0));
+		newMessages = SyntheticHistory.generate(NEW_MESSAGES, 1);
+
+		colorBarOverlay = FieldInjector.inject(new ChatColorBarOverlay(), simulator.getFakeClient().getClient(),
+			simulator.getChatWidgetEditor(), simulator.getPlugin(), simulator.getMetrics());
+		graphics = new BufferedImage(ChatboxSimulator.CHATBOX_WIDTH, ChatboxSimulator.CHATBOX_HEIGHT, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+		simulator.rebuild();
+		scrollToBottom();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		graphics.dispose();
+	}
+
+	/**
+	 * Time and bytes spent in the plugin, averaged over the rebuilds of an iteration
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PluginCounters
+	{
+		private long rebuilds;
+		private long nanos;
+		private long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			rebuilds = 0;
+			nanos = 0;
+			bytes = 0;
+		}
+
+		public double pluginNanosPerRebuild()
+		{
+			return rebuilds > 0 ? (double) nanos / rebuilds : 0;
+		}
+
+		public double pluginBytesPerRebuild()
+		{
+			return rebuilds > 0 ? (double) bytes / rebuilds : 0;
+		}
+
+		long record(ChatboxSimulator simulator, long pluginNanos)
+		{
+			rebuilds++;
+			nanos += pluginNanos;
+			bytes += simulator.getPluginAllocatedBytes();
+			return pluginNanos;
+		}
+	}
+
+	/**
+	 * Scrolling or switching tabs, nothing new to process
+	 */
+	@Benchmark
+	public long rebuildUnchanged(PluginCounters counters)
+	{
+		return counters.record(simulator, simulator.rebuild());
+	}
+
+	/**
+	 * A message arriving in a live chat, with the oldest one dropped to keep the history the same size
+	 */
+	@Benchmark
+	public long rebuildNewMessage(PluginCounters counters)
+	{
+		simulator.addMessage(newMessages.get(nextNewMessage));
+		nextNewMessage = (nextNewMessage + 1) % NEW_MESSAGES;
+		simulator.trimHistory(messages);
+		return counters.record(simulator, simulator.rebuild());
+	}
+
+	/**
+	 * Finding and drawing the visible messages, scrolled to the newest ones
+	 */
+	@Benchmark
+	public Dimension frame()
+	{
+		return colorBarOverlay.render(graphics);
+	}
+
+	private void scrollToBottom()
+	{
+		FakeWidget chatbox = simulator.getChatbox();
+		chatbox.setScrollY(Math.max(0, chatbox.getScrollHeight() - ChatboxSimulator.CHATBOX_HEIGHT));
+	}
+}
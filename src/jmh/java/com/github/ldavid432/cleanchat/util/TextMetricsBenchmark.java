@@ -0,0 +1,42 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextMetricsBenchmark
+{
+	@Param({
+		"Zezima:",
+		"<col=ff0000>[12:34]</col> <img=41>Zezima: Selling lobsters 200ea, trade me <lt>3",
+		"The quick brown fox jumps over the lazy dog. The quick brown fox jumps over the lazy dog. The quick brown fox jumps over the lazy dog.<br>And then it did it again.",
+	})
+	public String text;
+
+	@Benchmark
+	public int getTextLength()
+	{
+		return CleanChatUtil.getTextLength(text);
+	}
+
+	@Benchmark
+	public int getTextLineCount()
+	{
+		// Roughly the width of a fixed mode chatbox
+		return CleanChatUtil.getTextLineCount(text, 486, 4);
+	}
+}
@@ -0,0 +1,56 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * extractFromText against messages prefixed the way the timestamp plugin does it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampExtractionBenchmark
+{
+	@Param({"[HH:mm]", "HH:mm:ss", "[hh:mm a]", "'['yyyy-MM-dd HH:mm:ss']'"})
+	public String format;
+
+	private FormatterExtractor.ExtractionResult template;
+	private String hit;
+	private String miss;
+
+	@Setup
+	public void setUp()
+	{
+		template = FormatterExtractor.createFromFormatString(format);
+		String timestamp = new SimpleDateFormat(format).format(new Date(1_700_000_000_000L));
+		hit = "<col=ff0000>" + timestamp + "</col> Zezima: Selling lobsters 200ea";
+		miss = "Zezima: Selling lobsters 200ea";
+	}
+
+	@Benchmark
+	public FormatterExtractor.ExtractionResult extractHit()
+	{
+		return FormatterExtractor.extractFromText(template, hit);
+	}
+
+	@Benchmark
+	public FormatterExtractor.ExtractionResult extractMiss()
+	{
+		return FormatterExtractor.extractFromText(template, miss);
+	}
+}
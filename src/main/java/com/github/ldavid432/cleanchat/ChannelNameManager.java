@@ -1,10 +1,23 @@
 package com.github.ldavid432.cleanchat;
 
+import static com.github.ldavid432.cleanchat.CleanChatChannelsConfig.CHANNEL_NAMES_KEY;
 import static com.github.ldavid432.cleanchat.CleanChatChannelsConfig.DEFAULT_CUSTOM_CHANNEL_NAME;
+import com.github.ldavid432.cleanchat.data.ChannelName;
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.util.AhoCorasickMatcher;
+import com.github.ldavid432.cleanchat.util.ChannelNameList;
 import com.github.ldavid432.cleanchat.util.CleanChatUtil;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.MAX_CHANNEL_LIST_SIZE;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.sanitizeName;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -17,9 +30,13 @@ import net.runelite.api.clan.ClanChannel;
 import net.runelite.api.clan.ClanID;
 import net.runelite.api.events.ClanChannelChanged;
 import net.runelite.api.events.FriendsChatChanged;
+import net.runelite.api.events.GameStateChanged;
 import net.runelite.client.callback.ClientThread;
+import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.events.RuneScapeProfileChanged;
+import org.apache.commons.lang3.tuple.Pair;
 
 /**
  * Tracks current and previous chat channel names for use in the ChatWidgetEditor
@@ -28,6 +45,10 @@ import net.runelite.client.events.ConfigChanged;
 @Singleton
 public class ChannelNameManager
 {
+	// ChatChannel name -> raw names, least recently seen first
+	private static final Type SAVED_NAMES_TYPE = new TypeToken<Map<String, List<String>>>()
+	{
+	}.getType();
 
 	@Inject
 	private Client client;
@@ -38,15 +59,24 @@ public class ChannelNameManager
 	@Inject
 	private CleanChatChannelsConfig config;
 
+	@Inject
+	private ConfigManager configManager;
+
+	@Inject
+	private Gson gson;
+
+	@Inject
+	private ChatRefreshScheduler refreshScheduler;
+
 	// Store these as a collection so that even if you leave a channel the chats will still be "cleaned"
 	@Getter
-	private final List<String> clanNames = new ArrayList<>();
+	private final ChannelNameList clanNames = new ChannelNameList(MAX_CHANNEL_LIST_SIZE);
 	@Getter
-	private final List<String> guestClanNames = new ArrayList<>();
+	private final ChannelNameList guestClanNames = new ChannelNameList(MAX_CHANNEL_LIST_SIZE);
 	@Getter
-	private final List<String> friendsChatNames = new ArrayList<>();
+	private final ChannelNameList friendsChatNames = new ChannelNameList(MAX_CHANNEL_LIST_SIZE);
 	@Getter
-	private final List<String> groupIronNames = new ArrayList<>();
+	private final ChannelNameList groupIronNames = new ChannelNameList(MAX_CHANNEL_LIST_SIZE);
 
 	@Getter
 	private String shortClanName = DEFAULT_CUSTOM_CHANNEL_NAME;
@@ -57,42 +87,94 @@ public class ChannelNameManager
 	@Getter
 	private String shortGroupIronName = DEFAULT_CUSTOM_CHANNEL_NAME;
 
+	// Incremented whenever any names change so anything derived from them knows when it is stale
+	@Getter
+	private int version = 0;
+
+	// Names changed since they were last saved to or loaded from the RS profile
+	private boolean namesDirty = false;
+
+	// All sanitized names in ChatChannel order then list order, so the first match is the same one the per-channel search would find.
+	//  List order changes as names are seen again so this is rebuilt whenever it does
+	private final List<Pair<ChatChannel, String>> nameMatches = new ArrayList<>();
+	private AhoCorasickMatcher nameMatcher = new AhoCorasickMatcher(List.of(), true);
+
 	public void startup()
 	{
+		// Remembered names first so messages restored from chat history are matched on the very first rebuild
+		loadNames();
+
 		if (client.getGameState() == GameState.LOGGED_IN)
 		{
-			clientThread.invokeLater(() -> {
-				updateFriendsChatName();
+			clientThread.invokeLater(this::addCurrentNames);
+		}
 
-				ClanChannel clanChannel = client.getClanChannel(ClanID.CLAN);
-				if (clanChannel != null)
-				{
-					addName(clanNames, clanChannel.getName());
-				}
+		updateShortNames();
+	}
 
-				ClanChannel groupIronChannel = client.getClanChannel(ClanID.GROUP_IRONMAN);
-				if (groupIronChannel != null)
-				{
-					addName(groupIronNames, groupIronChannel.getName());
-				}
+	public void shutdown()
+	{
+		saveNames();
+		clearNames();
+	}
 
-				ClanChannel guestClanChannel = client.getGuestClanChannel();
-				if (guestClanChannel != null)
-				{
-					addName(guestClanNames, guestClanChannel.getName());
-				}
-			});
+	// Names of the channels we are in right now
+	private void addCurrentNames()
+	{
+		updateFriendsChatName();
+
+		ClanChannel clanChannel = client.getClanChannel(ClanID.CLAN);
+		if (clanChannel != null)
+		{
+			addName(clanNames, clanChannel.getName());
 		}
 
-		updateShortNames();
+		ClanChannel groupIronChannel = client.getClanChannel(ClanID.GROUP_IRONMAN);
+		if (groupIronChannel != null)
+		{
+			addName(groupIronNames, groupIronChannel.getName());
+		}
+
+		ClanChannel guestClanChannel = client.getGuestClanChannel();
+		if (guestClanChannel != null)
+		{
+			addName(guestClanNames, guestClanChannel.getName());
+		}
 	}
 
-	public void shutdown()
+	private void clearNames()
 	{
 		clanNames.clear();
 		groupIronNames.clear();
 		guestClanNames.clear();
 		friendsChatNames.clear();
+		rebuildNameMatcher();
+		version++;
+		namesDirty = false;
+	}
+
+	/**
+	 * @return the first channel with a name contained in the channel text and the sanitized name that matched, or null if none do
+	 */
+	public Pair<ChatChannel, String> findChannelMatch(String channelText)
+	{
+		int index = nameMatcher.findFirst(channelText);
+		return index != -1 ? nameMatches.get(index) : null;
+	}
+
+	private void rebuildNameMatcher()
+	{
+		nameMatches.clear();
+		List<String> patterns = new ArrayList<>();
+		for (ChatChannel channel : ChatChannel.values())
+		{
+			for (ChannelName name : channel.getNames(this).getNames())
+			{
+				nameMatches.add(Pair.of(channel, name.getSanitizedName()));
+				patterns.add(name.getSanitizedName());
+			}
+		}
+		nameMatcher = new AhoCorasickMatcher(patterns, true);
 	}
 
 	@Subscribe
@@ -138,19 +220,133 @@ public class ChannelNameManager
 		}
 	}
 
-	private void addName(List<String> nameList, String name)
+	/**
+	 * Add the name or mark it as recently seen
+	 */
+	@VisibleForTesting
+	void addName(ChannelNameList nameList, String name)
+	{
+		if (putName(nameList, name))
+		{
+			rebuildNameMatcher();
+			version++;
+			namesDirty = true;
+		}
+	}
+
+	/**
+	 * @return true if the name was added or moved to the end of the list
+	 */
+	private boolean putName(ChannelNameList nameList, String name)
+	{
+		if (name == null)
+		{
+			return false;
+		}
+
+		// Called on every rebuild for the friends chat so this needs to stay cheap when nothing changes
+		if (nameList.contains(name))
+		{
+			return nameList.touch(name);
+		}
+
+		nameList.add(new ChannelName(name, sanitizeName(name)));
+		return true;
+	}
+
+	@Subscribe
+	public void onGameStateChanged(GameStateChanged event)
+	{
+		if (event.getGameState() == GameState.LOGIN_SCREEN)
+		{
+			saveNames();
+		}
+	}
+
+	@Subscribe
+	public void onRuneScapeProfileChanged(RuneScapeProfileChanged event)
+	{
+		// Whatever we have belongs to the previous profile, which was saved when it logged out. Saving now would write it to the new profile
+		clearNames();
+		loadNames();
+
+		if (client.getGameState() == GameState.LOGGED_IN)
+		{
+			// The profile can arrive after the channels were joined and after the first rebuild following login
+			clientThread.invoke(this::addCurrentNames);
+			refreshScheduler.requestRefresh();
+		}
+	}
+
+	/**
+	 * Add the names saved for the current RS profile to the ones we already know
+	 */
+	private void loadNames()
+	{
+		String json = configManager.getRSProfileConfiguration(CleanChatChannelsConfig.GROUP, CHANNEL_NAMES_KEY);
+		if (json == null)
+		{
+			return;
+		}
+
+		Map<String, List<String>> savedNames;
+		try
+		{
+			savedNames = gson.fromJson(json, SAVED_NAMES_TYPE);
+		}
+		catch (JsonSyntaxException e)
+		{
+			log.warn("Failed to load saved channel names", e);
+			return;
+		}
+
+		if (savedNames == null)
+		{
+			return;
+		}
+
+		boolean changed = false;
+		for (ChatChannel channel : ChatChannel.values())
+		{
+			List<String> names = savedNames.get(channel.name());
+			if (names != null)
+			{
+				for (String name : names)
+				{
+					changed |= putName(channel.getNames(this), name);
+				}
+			}
+		}
+
+		if (changed)
+		{
+			rebuildNameMatcher();
+			version++;
+			log.debug("Loaded saved channel names");
+		}
+	}
+
+	private void saveNames()
 	{
-		if (nameList.contains(name) || name == null)
+		if (!namesDirty || configManager.getRSProfileKey() == null)
 		{
 			return;
 		}
 
-		if (nameList.size() == MAX_CHANNEL_LIST_SIZE)
+		Map<String, List<String>> savedNames = new HashMap<>();
+		for (ChatChannel channel : ChatChannel.values())
 		{
-			nameList.remove(0);
+			List<String> names = new ArrayList<>();
+			for (ChannelName name : channel.getNames(this).getNames())
+			{
+				names.add(name.getName());
+			}
+			savedNames.put(channel.name(), names);
 		}
 
-		nameList.add(name);
+		configManager.setRSProfileConfiguration(CleanChatChannelsConfig.GROUP, CHANNEL_NAMES_KEY, gson.toJson(savedNames));
+		namesDirty = false;
+		log.debug("Saved channel names");
 	}
 
 	@Subscribe
@@ -168,5 +364,6 @@ public class ChannelNameManager
 		shortGuestClanName = config.getShortGuestClanName();
 		shortFriendsChatName = config.getShortFriendsName();
 		shortGroupIronName = config.getShortGroupIronName();
+		version++;
 	}
 }
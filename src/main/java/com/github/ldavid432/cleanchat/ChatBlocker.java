@@ -29,7 +29,12 @@ package com.github.ldavid432.cleanchat;
 import com.github.ldavid432.cleanchat.data.ChatChannel;
 import com.github.ldavid432.cleanchat.data.ChatBlock;
 import com.github.ldavid432.cleanchat.data.ChatTab;
-import java.util.stream.Stream;
+import com.github.ldavid432.cleanchat.data.PreprocessedMessage;
+import com.github.ldavid432.cleanchat.util.MessageDecisionCache;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Objects;
+import java.util.function.IntPredicate;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
@@ -45,7 +50,7 @@ import org.apache.commons.lang3.tuple.Pair;
 public class ChatBlocker
 {
 	@Inject
-	private CleanChatChannelsConfig config;
+	private CleanChatChannelsPlugin plugin;
 
 	@Inject
 	private ChannelNameManager channelNameManager;
@@ -53,6 +58,16 @@ public class ChatBlocker
 	@Inject
 	private Client client;
 
+	@Inject
+	private PerformanceMetrics metrics;
+
+	@Inject
+	private MessagePreprocessor messagePreprocessor;
+
+	private final MessageDecisionCache decisionCache = new MessageDecisionCache();
+	// Kept in a field so a new lambda isn't created for every cache miss
+	private final IntPredicate isMessageGone = id -> client.getMessages().get(id) == null;
+
 	@Subscribe
 	public void onScriptCallbackEvent(ScriptCallbackEvent event)
 	{
@@ -77,15 +92,62 @@ public class ChatBlocker
 
 		// end core RL
 
+		long start = metrics.start();
+
 		ChatTab selectedChatTab = ChatTab.of(client.getVarcIntValue(VarClientID.CHAT_VIEW));
+		CleanChatConfigSnapshot config = plugin.getConfigSnapshot();
+
+		// This runs for every message on every rebuild, so only decide each message once per config, names and tab
+		long tag = ((long) config.getEpoch() << 32) | ((long) (channelNameManager.getVersion() & 0xFFFFFF) << 8) | selectedChatTab.ordinal();
+		int textHash = 31 * message.hashCode() + Objects.hashCode(channelText);
+
+		boolean blockChat;
+		int cached = decisionCache.get(messageId, tag, textHash);
+		if (cached != -1)
+		{
+			blockChat = cached == 1;
+			metrics.increment(PerformanceMetrics.Counter.BLOCK_CACHE_HITS);
+		}
+		else
+		{
+			metrics.increment(PerformanceMetrics.Counter.BLOCK_CACHE_MISSES);
+
+			PreprocessedMessage preprocessed = messagePreprocessor.get(messageId, message, channelText);
+			if (preprocessed != null)
+			{
+				metrics.increment(PerformanceMetrics.Counter.PREPROCESSED_HITS);
+				blockChat = preprocessed.isBlocked(config, selectedChatTab);
+			}
+			else
+			{
+				blockChat = shouldBlock(config, channelNameManager, selectedChatTab, message, channelText);
+			}
+			decisionCache.put(messageId, tag, textHash, blockChat, isMessageGone);
+		}
 
-		boolean blockChat = Stream.of(ChatBlock.values()).anyMatch(block -> block.appliesTo(config, message));
+		if (blockChat)
+		{
+			intStack[intStackSize - 3] = 0;
+		}
+
+		metrics.stop(PerformanceMetrics.Stage.BLOCK_DECISION, start);
+	}
+
+	public void clearCache()
+	{
+		decisionCache.clear();
+	}
+
+	@VisibleForTesting
+	static boolean shouldBlock(CleanChatConfigSnapshot config, ChannelNameManager channelNameManager, ChatTab selectedChatTab, String message, String channelText)
+	{
+		boolean blockChat = config.findBlock(message) != null;
 
 		if (!blockChat && !message.isEmpty())
 		{
 			Pair<ChatChannel, String> match = ChatChannel.findChannelMatch(channelText, channelNameManager);
 			if (match == null) {
-				return;
+				return false;
 			}
 
 			ChatChannel channel = match.getLeft();
@@ -100,9 +162,6 @@ public class ChatBlocker
 			blockChat = true;
 		}
 
-		if (blockChat)
-		{
-			intStack[intStackSize - 3] = 0;
-		}
+		return blockChat;
 	}
 }
@@ -0,0 +1,183 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import lombok.Getter;
+
+/**
+ * Where each message ended up after the last rebuild, top to bottom, stored as parallel arrays that are reused between rebuilds.
+ * Messages are placed one after another so both the tops and bottoms are sorted, which lets the overlays binary search for what is on screen.
+ * Messages are added bottom to top like their widgets, so older messages can be added above the rest without moving anything.
+ */
+public class ChatLayout
+{
+	private static final ChatChannel[] CHANNELS = ChatChannel.values();
+
+	// Stored bottom to top, see slot
+	// Relative to the chatbox scroll area
+	private int[] y = new int[128];
+	private int[] height = new int[128];
+	private int[] x = new int[128];
+	private int[] indentSpaces = new int[128];
+	// -1 if the message isn't in a known channel
+	private int[] channel = new int[128];
+	// Index of the message's first widget in the chatbox dynamic children
+	private int[] widgetIndex = new int[128];
+	// See TimestampColumns.toChars
+	private char[][] timestamp = new char[128][];
+
+	@Getter
+	private int size = 0;
+
+	public void clear()
+	{
+		// Drop references so old timestamps can be collected
+		Arrays.fill(timestamp, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Drop all but the given number of messages from the bottom
+	 */
+	public void truncate(int size)
+	{
+		if (size < this.size)
+		{
+			Arrays.fill(timestamp, size, this.size, null);
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Add a message above all the others
+	 */
+	public void add(int y, int height, int x, int indentSpaces, @Nullable ChatChannel channel, int widgetIndex,
+					@Nullable char[] timestamp)
+	{
+		if (size == this.y.length)
+		{
+			grow();
+		}
+
+		size++;
+		set(0, y, height, x, indentSpaces, channel, widgetIndex, timestamp);
+	}
+
+	/**
+	 * Replace the message at the given index, for when a message is moved or finishes processing after it was added
+	 */
+	public void set(int index, int y, int height, int x, int indentSpaces, @Nullable ChatChannel channel, int widgetIndex,
+					@Nullable char[] timestamp)
+	{
+		int slot = slot(index);
+		this.y[slot] = y;
+		this.height[slot] = height;
+		this.x[slot] = x;
+		this.indentSpaces[slot] = indentSpaces;
+		this.channel[slot] = channel != null ? channel.ordinal() : -1;
+		this.widgetIndex[slot] = widgetIndex;
+		this.timestamp[slot] = timestamp;
+	}
+
+	public int getY(int index)
+	{
+		return y[slot(index)];
+	}
+
+	public int getHeight(int index)
+	{
+		return height[slot(index)];
+	}
+
+	public int getX(int index)
+	{
+		return x[slot(index)];
+	}
+
+	public int getIndentSpaces(int index)
+	{
+		return indentSpaces[slot(index)];
+	}
+
+	@Nullable
+	public ChatChannel getChannelType(int index)
+	{
+		int slot = slot(index);
+		return channel[slot] != -1 ? CHANNELS[channel[slot]] : null;
+	}
+
+	public int getWidgetIndex(int index)
+	{
+		return widgetIndex[slot(index)];
+	}
+
+	@Nullable
+	public char[] getTimestamp(int index)
+	{
+		return timestamp[slot(index)];
+	}
+
+	/**
+	 * @return index of the first message starting at or below the given y, or size if there are none
+	 */
+	public int firstStartingAtOrBelow(int top)
+	{
+		int low = 0;
+		int high = size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (getY(mid) < top)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return index of the last message ending at or above the given y, or -1 if there are none
+	 */
+	public int lastEndingAtOrAbove(int bottom)
+	{
+		int low = 0;
+		int high = size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			int slot = slot(mid);
+			if (y[slot] + height[slot] <= bottom)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low - 1;
+	}
+
+	// Index from the top to index in the arrays
+	private int slot(int index)
+	{
+		return size - 1 - index;
+	}
+
+	private void grow()
+	{
+		int capacity = y.length * 2;
+		y = Arrays.copyOf(y, capacity);
+		height = Arrays.copyOf(height, capacity);
+		x = Arrays.copyOf(x, capacity);
+		indentSpaces = Arrays.copyOf(indentSpaces, capacity);
+		channel = Arrays.copyOf(channel, capacity);
+		widgetIndex = Arrays.copyOf(widgetIndex, capacity);
+		timestamp = Arrays.copyOf(timestamp, capacity);
+	}
+}
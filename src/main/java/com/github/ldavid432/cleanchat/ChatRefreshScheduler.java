@@ -0,0 +1,65 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+import net.runelite.api.events.ClientTick;
+import net.runelite.client.eventbus.Subscribe;
+
+/**
+ * Batches chat refresh requests so a burst of config changes only rebuilds the chatbox once, on the next client tick
+ */
+@Slf4j
+@Singleton
+public class ChatRefreshScheduler
+{
+	@Inject
+	private Client client;
+
+	@Inject
+	private PerformanceMetrics metrics;
+
+	// Requests since the last refresh, can be added to from any thread
+	private final AtomicInteger pendingRequests = new AtomicInteger();
+
+	// Requests that were folded into another one's refresh
+	@Getter
+	private long coalescedRequests = 0;
+
+	public void requestRefresh()
+	{
+		pendingRequests.incrementAndGet();
+	}
+
+	@Subscribe
+	public void onClientTick(ClientTick event)
+	{
+		int requests = pendingRequests.getAndSet(0);
+		if (requests == 0)
+		{
+			return;
+		}
+
+		if (requests > 1)
+		{
+			log.debug("Coalesced {} chat refreshes", requests);
+			coalescedRequests += requests - 1;
+			metrics.add(PerformanceMetrics.Counter.REFRESHES_COALESCED, requests - 1);
+		}
+		metrics.increment(PerformanceMetrics.Counter.REFRESHES);
+
+		client.refreshChat();
+	}
+
+	/**
+	 * Drop anything pending, for when the refresh is done some other way
+	 */
+	public void clear()
+	{
+		pendingRequests.set(0);
+	}
+}
@@ -1,6 +1,5 @@
 package com.github.ldavid432.cleanchat;
 
-import static com.github.ldavid432.cleanchat.util.CleanChatUtil.CLAN_INSTRUCTION_MESSAGE;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.SCRIPT_REBUILD_CHATBOX;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.SCRIPT_SCROLLBAR_MAX;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.SCRIPT_SCROLLBAR_MIN;
@@ -8,20 +7,24 @@ import static com.github.ldavid432.cleanchat.util.CleanChatUtil.sanitizeName;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.wrapWithBrackets;
 import com.github.ldavid432.cleanchat.data.ChatChannel;
 import com.github.ldavid432.cleanchat.data.ChatTab;
+import com.github.ldavid432.cleanchat.util.IntObjectMap;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.github.ldavid432.cleanchat.util.TextMetricsCache;
+import com.github.ldavid432.cleanchat.util.TimestampColumns;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Arrays;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
+import net.runelite.api.MessageNode;
+import net.runelite.api.events.ClientTick;
 import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.ScriptCallbackEvent;
 import net.runelite.api.events.ScriptPostFired;
 import net.runelite.api.events.ScriptPreFired;
 import net.runelite.api.gameval.InterfaceID;
@@ -32,7 +35,6 @@ import static net.runelite.api.widgets.WidgetPositionMode.ABSOLUTE_TOP;
 import static net.runelite.api.widgets.WidgetSizeMode.ABSOLUTE;
 import static net.runelite.api.widgets.WidgetSizeMode.MINUS;
 import net.runelite.client.eventbus.Subscribe;
-import net.runelite.client.util.Text;
 import org.apache.commons.lang3.tuple.Pair;
 
 /**
@@ -46,9 +48,6 @@ import org.apache.commons.lang3.tuple.Pair;
 @Singleton
 public class ChatWidgetEditor
 {
-	@Inject
-	private CleanChatChannelsConfig config;
-
 	@Inject
 	private ChannelNameManager channelNameManager;
 
@@ -58,12 +57,72 @@ public class ChatWidgetEditor
 	@Inject
 	private CleanChatChannelsPlugin plugin;
 
+	@Inject
+	private TextMetricsCache textMetrics;
+
+	@Inject
+	private PerformanceMetrics metrics;
+
+	@Inject
+	private MessagePreprocessor messagePreprocessor;
+
+	// Enough to stay well within a frame while still finishing a full history in a second or two
+	private static final int DEFERRED_BATCH_SIZE = 25;
+
 	private int lastScrollDiff = -1;
 	private int lastChatTab = ChatTab.CLOSED.getValue();
 	private boolean chatboxScrolled = false;
 
+	// Ids of the messages rebuildchatbox is creating widgets for, in the same order as the widgets
+	private int[] rebuildMessageIds = new int[128];
+	private int rebuildMessageCount = 0;
+	private boolean rebuildingChatbox = false;
+	// Hash of the texts of the messages in this rebuild
+	private long rebuildMessageHash = 0;
+
+	// Everything that decided the result of the last full pass, if it all matches we can reapply that result as is
+	private boolean processedFingerprintValid = false;
+	private int[] processedMessageIds = new int[128];
+	private int processedMessageCount = 0;
+	// Only trusted once the ids match, it's there to catch messages another plugin edited
+	private long processedMessageHash = 0;
+	private int processedChatTab = 0;
+	private int processedWidth = 0;
+	private int processedHeight = 0;
+	private int processedEpoch = 0;
+	@Nullable
+	private TimestampColumns processedTimestampColumns = null;
+	private int processedTimestampTemplateWidth = 0;
+	private boolean processedFixedWidthTimestamp = false;
+	private int processedScrollHeight = 0;
+
+	// Results of the previous rebuild keyed by message id, replayed onto the new widgets if the game laid them out the same
+	private IntObjectMap<ChatWidgetGroup.ProcessedState> processedStates = new IntObjectMap<>();
+	private IntObjectMap<ChatWidgetGroup.ProcessedState> nextProcessedStates = new IntObjectMap<>();
+	private int processedNamesVersion = -1;
+
+	// Reused between rebuilds, in widget order (bottom to top)
+	private ChatWidgetGroup[] groups = new ChatWidgetGroup[128];
+	private int groupCount = 0;
+
 	@Getter
-	public List<ChatWidgetGroup> chatWidgetGroups = List.of();
+	private final ChatLayout layout = new ChatLayout();
+
+	// Shared by all groups, flushed after each one is processed or placed
+	private final WidgetMutationBuffer mutations = new WidgetMutationBuffer();
+
+	// Indices into groups left unprocessed by viewport-first mode, processed in batches on the following ticks
+	private int[] deferredGroups = new int[128];
+	private int deferredCount = 0;
+	private int deferredCursor = 0;
+	// Viewport-first mode only looks at the messages up to just above the view during the rebuild, the rest are picked up on the following ticks
+	//  starting from scanCursor (a message index, like rebuildMessageIds)
+	private int scanCursor = 0;
+	private int scanLimit = 0;
+	// Bottom of the newest message, what unfinished passes are placed upwards from
+	private int anchorBottom = 0;
+	// Whether the pass the deferred groups belong to can be replayed as a whole once they are all done
+	private boolean deferredFingerprintValid = false;
 
 	@Subscribe
 	public void onGameStateChanged(GameStateChanged event)
@@ -73,19 +132,75 @@ public class ChatWidgetEditor
 			// Reset scroll
 			lastScrollDiff = -1;
 			chatboxScrolled = false;
+			clearCache();
 		}
 	}
 
+	/**
+	 * Forget all previously processed messages, should be called whenever anything that affects processing changes
+	 */
+	public void clearCache()
+	{
+		processedStates.clear();
+		processedFingerprintValid = false;
+		cancelDeferred();
+	}
+
+	public boolean hasDeferredWork()
+	{
+		return deferredCursor < deferredCount || scanCursor < scanLimit;
+	}
+
+	private void cancelDeferred()
+	{
+		deferredCount = 0;
+		deferredCursor = 0;
+		scanCursor = 0;
+		scanLimit = 0;
+	}
+
 	@Subscribe
 	public void onScriptPreFired(ScriptPreFired event)
 	{
-		if (event.getScriptId() >= SCRIPT_SCROLLBAR_MIN && event.getScriptId() <= SCRIPT_SCROLLBAR_MAX)
+		if (event.getScriptId() == SCRIPT_REBUILD_CHATBOX)
+		{
+			rebuildingChatbox = true;
+			rebuildMessageCount = 0;
+			rebuildMessageHash = 0;
+		}
+		else if (event.getScriptId() >= SCRIPT_SCROLLBAR_MIN && event.getScriptId() <= SCRIPT_SCROLLBAR_MAX)
 		{
 			Object[] args = event.getScriptEvent().getArguments();
 			chatboxScrolled = args.length >= 2 && (int) args[1] == InterfaceID.Chatbox.CHATSCROLLBAR;
 		}
 	}
 
+	// Runs after every other chatFilterCheck subscriber so that we only record messages that actually end up with widgets
+	@Subscribe(priority = -10)
+	public void onScriptCallbackEvent(ScriptCallbackEvent event)
+	{
+		if (!rebuildingChatbox || !"chatFilterCheck".equals(event.getEventName()))
+		{
+			return;
+		}
+
+		int[] intStack = client.getIntStack();
+		int intStackSize = client.getIntStackSize();
+
+		if (intStack[intStackSize - 3] != 0)
+		{
+			if (rebuildMessageCount == rebuildMessageIds.length)
+			{
+				rebuildMessageIds = Arrays.copyOf(rebuildMessageIds, rebuildMessageIds.length * 2);
+			}
+			rebuildMessageIds[rebuildMessageCount++] = intStack[intStackSize - 1];
+
+			// Other plugins can edit a message's text without changing its id
+			Object message = client.getObjectStack()[client.getObjectStackSize() - 1];
+			rebuildMessageHash = rebuildMessageHash * 31 + (message != null ? message.hashCode() : 0);
+		}
+	}
+
 	/*
 	Most chats appear in this format as dynamic children on the chatbox scroll area:
 		// bottom chat line
@@ -142,6 +257,7 @@ public class ChatWidgetEditor
 	{
 		if (event.getScriptId() == SCRIPT_REBUILD_CHATBOX)
 		{
+			rebuildingChatbox = false;
 			checkReplacements();
 		}
 		else if (event.getScriptId() >= SCRIPT_SCROLLBAR_MIN && event.getScriptId() <= SCRIPT_SCROLLBAR_MAX && chatboxScrolled)
@@ -159,6 +275,8 @@ public class ChatWidgetEditor
 
 	public void checkReplacements()
 	{
+		long rebuildStart = metrics.start();
+
 		// FriendsChatManager is null at the first FriendsChatChanged after login so we have to add this check later
 		channelNameManager.updateFriendsChatName();
 
@@ -167,152 +285,57 @@ public class ChatWidgetEditor
 
 		if (chatbox != null && selectedChatTab != ChatTab.CLOSED)
 		{
-			Widget[] chatWidgets = chatbox.getDynamicChildren().clone();
-			Widget[] clickboxWidgets = chatbox.getStaticChildren().clone();
-
-			// TODO: Make i = 0
-			// TODO: See if we can avoid looping through every single widget even if there is no text there
-			// for (int i = 2; i < chats.length; i += 4)
-			chatWidgetGroups = Stream.iterate(
-					2,
-					i -> i < chatWidgets.length,
-					i -> i + 4
-				)
-				.map(i -> {
-					int rankWidgetIndex = i + 1; //    [3]
-					int messageWidgetIndex = i - 1; // [1]
-					int nameWidgetIndex = i - 2; //    [0]
-
-					Widget channelWidget = chatWidgets[i];
-					if (channelWidget.getText().isEmpty())
-					{
-						// Channel is not at [2]. This is either a message with channel at [0] or a message without a channel
-
-						if (!chatWidgets[i - 2].getText().isEmpty())
-						{
-							// Channel is at [0], this is a special message, adjust indices accordingly
-
-							Widget messageWidget = chatWidgets[i - 1];
-							// For some reason the fc now talking message specifically, has the CLAN chat join message here...
-							if (messageWidget.getText().isEmpty() || Text.removeTags(messageWidget.getText()).equals(CLAN_INSTRUCTION_MESSAGE))
-							{
-								// Friends chat message
-
-								messageWidgetIndex = i - 2; // [0]
-								// Empty widget in this case, but still good to handle it
-								nameWidgetIndex = i - 1; //    [1]
-							}
-							else
-							{
-								// Other special message
-
-								channelWidget = chatWidgets[i - 2]; // [0]
-								// Empty widget in this case, but still good to handle it
-								nameWidgetIndex = i; //                [2]
-							}
-						}
-						else if (chatWidgets[messageWidgetIndex].getText().isEmpty())
-						{
-							return null;
-						}
-						else
-						{
-							// Clan/GIM broadcast after world hopping - just use default setup since we mainly care about the message in this case
-						}
-					}
-
-					return new ChatWidgetGroup(channelWidget, chatWidgets[rankWidgetIndex], chatWidgets[nameWidgetIndex], chatWidgets[messageWidgetIndex], clickboxWidgets[(i - 2) / 4]);
-				})
-				.filter(Objects::nonNull)
-				.peek(group -> {
-					if (!group.getChannelText().isEmpty())
-					{
-						Pair<ChatChannel, String> match = ChatChannel.findChannelMatch(group.getChannelText(), channelNameManager);
-						if (match != null)
-						{
-							ChatChannel channel = match.getLeft();
-							String matchedChannelName = match.getRight();
-							String widgetChannelText = sanitizeName(group.getChannelText());
-							String shortName = channel.getShortName(channelNameManager, matchedChannelName);
-
-							group.setChannelType(channel);
-
-							if (channel.isChannelNameRemovalEnabled(config))
-							{
-								group.removeFromChannel(matchedChannelName);
-
-								matchedChannelName = wrapWithBrackets(matchedChannelName);
-							}
-							else if (!shortName.isBlank() && !channel.isShortNameDefault(channelNameManager))
-							{
-								String updatedChannelText = group.replaceChannelName(matchedChannelName, shortName);
-
-								matchedChannelName = sanitizeName(shortName);
-								widgetChannelText = sanitizeName(updatedChannelText);
-							}
-							else
-							{
-								matchedChannelName = wrapWithBrackets(matchedChannelName);
-							}
-
-							if (channel.isRemoveRankEnabled(config))
-							{
-								group.removeRank();
-							}
-
-							if (channel != ChatChannel.FRIENDS_CHAT)
-							{
-								group.calculateChannelIndent(config, matchedChannelName, widgetChannelText,
-									plugin.getTimestampTemplateWidth(), plugin.isFixedWidthTimestampEnabled());
-							}
-						}
-					}
-
-					if (plugin.isFixedWidthTimestampEnabled())
-					{
-						group.extractTimestamp(plugin.getTimestampTemplate(), plugin.getTimestampTemplateWidth());
-					}
-
-					group.applyIndent();
-
-					// Calculate height last
-					group.calculateHeight();
-				})
-				.collect(Collectors.toList());
-
-			Collections.reverse(chatWidgetGroups);
-
-			// Calculate this after editing messages
-			int totalHeight = chatWidgetGroups.stream()
-				.map(ChatWidgetGroup::getHeight)
-				.reduce(0, Integer::sum);
-
-			// If we only have a few messages we want to place them at the bottom (chatbox.getHeight()) instead of the top (0).
-			//  If placing from the bottom, add padding first
-			int y = totalHeight >= chatbox.getHeight() ? 0 : chatbox.getHeight() - totalHeight - 2;
-
-			// Place widgets vertically
-			for (ChatWidgetGroup group : chatWidgetGroups)
-			{
-				group.place(y);
+			Widget[] chatWidgets = chatbox.getDynamicChildren();
+			Widget[] clickboxWidgets = chatbox.getStaticChildren();
 
-				y += group.getHeight();
+			// Channel names changing affects every message so there is nothing worth replaying
+			if (processedNamesVersion != channelNameManager.getVersion())
+			{
+				processedNamesVersion = channelNameManager.getVersion();
+				processedStates.clear();
+				processedFingerprintValid = false;
 			}
 
-			// If placing at the top, add padding last
-			if (totalHeight >= chatbox.getHeight())
+			int scrollHeight;
+			if (processedFingerprintValid && isSameAsProcessed(chatbox, selectedChatTab) && replayPreviousPass(chatWidgets, clickboxWidgets))
 			{
-				y += 2;
+				// Same messages laid out the same way as last time, all that is left is to position everything again
+				metrics.increment(PerformanceMetrics.Counter.PASSES_SKIPPED);
+				scrollHeight = processedScrollHeight;
+			}
+			else
+			{
+				processAll(chatbox, chatWidgets, clickboxWidgets);
+				if (scanCursor < scanLimit)
+				{
+					// The scroll height can't be worked out without every message, so keep the game's until the pass is finished
+					// Anything above the groups found so far is from the previous pass and may not be there anymore
+					layout.truncate(groupCount);
+					placeFrom(0);
+					scrollHeight = chatbox.getScrollHeight();
+				}
+				else
+				{
+					scrollHeight = placeAll(chatbox);
+				}
+
+				recordProcessed(chatbox, selectedChatTab);
+				// Messages we don't know the id of can't be replayed, and neither can a pass that isn't finished
+				processedFingerprintValid = rebuildMessageCount > 0 && !hasDeferredWork();
+				deferredFingerprintValid = rebuildMessageCount > 0;
+				processedScrollHeight = scrollHeight;
 			}
 
-			y = max(y, chatbox.getHeight());
-
-			chatbox.setScrollHeight(y);
+			chatbox.setScrollHeight(scrollHeight);
 			chatbox.revalidateScroll();
 
+			long scrollbarStart = metrics.start();
+
 			// Replacing this script with Java allows us to avoid a clientThread.invokeLater as well as adjust the logic since we are modifying the true scroll height
 			scrollbar_resize(chatbox);
 
+			metrics.stop(PerformanceMetrics.Stage.SCROLLBAR, scrollbarStart);
+
 			// Store this since rebuildchatbox changes the scroll position before we can
 			lastScrollDiff = chatbox.getScrollHeight() - chatbox.getScrollY();
 		}
@@ -321,8 +344,504 @@ public class ChatWidgetEditor
 			// chat closed - reset scroll
 			lastScrollDiff = -1;
 			chatboxScrolled = false;
+			cancelDeferred();
 		}
 		lastChatTab = selectedChatTab.getValue();
+
+		recordMutations();
+		metrics.stop(PerformanceMetrics.Stage.REBUILD, rebuildStart);
+	}
+
+	/**
+	 * @return true if this rebuild has the same messages, chatbox, config and timestamp template as the last full pass
+	 */
+	private boolean isSameAsProcessed(Widget chatbox, ChatTab selectedChatTab)
+	{
+		return processedChatTab == selectedChatTab.getValue()
+			&& processedWidth == chatbox.getWidth()
+			&& processedHeight == chatbox.getHeight()
+			&& processedEpoch == plugin.getConfigSnapshot().getEpoch()
+			&& processedTimestampColumns == plugin.getTimestampColumns()
+			&& processedTimestampTemplateWidth == plugin.getTimestampTemplateWidth()
+			&& processedFixedWidthTimestamp == plugin.isFixedWidthTimestampEnabled()
+			&& Arrays.equals(processedMessageIds, 0, processedMessageCount, rebuildMessageIds, 0, rebuildMessageCount)
+			&& processedMessageHash == rebuildMessageHash;
+	}
+
+	private void recordProcessed(Widget chatbox, ChatTab selectedChatTab)
+	{
+		if (processedMessageIds.length < rebuildMessageCount)
+		{
+			processedMessageIds = new int[rebuildMessageIds.length];
+		}
+		System.arraycopy(rebuildMessageIds, 0, processedMessageIds, 0, rebuildMessageCount);
+		processedMessageCount = rebuildMessageCount;
+		processedMessageHash = rebuildMessageHash;
+		processedChatTab = selectedChatTab.getValue();
+		processedWidth = chatbox.getWidth();
+		processedHeight = chatbox.getHeight();
+		processedEpoch = plugin.getConfigSnapshot().getEpoch();
+		processedTimestampColumns = plugin.getTimestampColumns();
+		processedTimestampTemplateWidth = plugin.getTimestampTemplateWidth();
+		processedFixedWidthTimestamp = plugin.isFixedWidthTimestampEnabled();
+	}
+
+	/**
+	 * Apply the previous pass to the new widgets without matching or measuring anything, once every message is confirmed to be laid out the same
+	 *
+	 * @return false if it couldn't be applied, in which case nothing was changed
+	 */
+	private boolean replayPreviousPass(Widget[] chatWidgets, Widget[] clickboxWidgets)
+	{
+		// Check everything before editing anything, the message hash could have collided
+		for (int i = 0; i < groupCount; i++)
+		{
+			ChatWidgetGroup group = groups[i];
+			int widgetIndex = group.getWidgetIndex();
+			if (widgetIndex + 3 >= chatWidgets.length || widgetIndex / 4 >= clickboxWidgets.length)
+			{
+				return false;
+			}
+
+			group.reset(chatWidgets, clickboxWidgets[widgetIndex / 4], widgetIndex, group.getWidgetLayout(), group.getMessageId());
+			ChatWidgetGroup.ProcessedState state = processedStates.get(group.getMessageId());
+			if (state == null || !group.matches(state))
+			{
+				return false;
+			}
+		}
+
+		long placementStart = metrics.start();
+
+		// Groups are bottom to top and the layout is top to bottom
+		for (int i = 0; i < groupCount; i++)
+		{
+			ChatWidgetGroup group = groups[i];
+			group.replay(processedStates.get(group.getMessageId()));
+			group.place(layout.getY(groupCount - 1 - i));
+			mutations.flush();
+		}
+
+		metrics.add(PerformanceMetrics.Counter.MESSAGES_REPLAYED, groupCount);
+		metrics.stop(PerformanceMetrics.Stage.PLACEMENT, placementStart);
+		return true;
+	}
+
+	@Subscribe
+	public void onClientTick(ClientTick event)
+	{
+		if (!hasDeferredWork())
+		{
+			return;
+		}
+
+		Widget chatbox = client.getWidget(InterfaceID.Chatbox.SCROLLAREA);
+		if (chatbox == null)
+		{
+			cancelDeferred();
+			return;
+		}
+
+		long start = metrics.start();
+
+		// Lowest group whose height may have changed, nothing below it has to move
+		int lowestChanged = groupCount;
+		int budget = DEFERRED_BATCH_SIZE;
+
+		for (; budget > 0 && deferredCursor < deferredCount; budget--, deferredCursor++)
+		{
+			int groupIndex = deferredGroups[deferredCursor];
+			process(groups[groupIndex], scanCursor < scanLimit ? nextProcessedStates : processedStates);
+			lowestChanged = min(lowestChanged, groupIndex);
+		}
+
+		if (scanCursor < scanLimit)
+		{
+			Widget[] chatWidgets = chatbox.getDynamicChildren();
+			Widget[] clickboxWidgets = chatbox.getStaticChildren();
+			for (; budget > 0 && scanCursor < scanLimit; scanCursor++)
+			{
+				ChatWidgetGroup group = scan(chatWidgets, clickboxWidgets, scanCursor);
+				if (group != null)
+				{
+					processOrReplay(group, getPreviousState(group), nextProcessedStates);
+					lowestChanged = min(lowestChanged, groupCount - 1);
+					budget--;
+				}
+			}
+
+			if (scanCursor == scanLimit)
+			{
+				finishScan();
+			}
+		}
+
+		if (hasDeferredWork())
+		{
+			// Older messages are placed upwards from the newer ones, so each batch only moves the messages it added or changed
+			placeFrom(lowestChanged);
+		}
+		else
+		{
+			// Everything is known now so lay the chat out properly once,
+			//  keeping the same distance from the bottom so the messages being read don't move
+			int scrollDiff = chatbox.getScrollHeight() - chatbox.getScrollY();
+			int scrollHeight = placeAll(chatbox);
+			chatbox.setScrollHeight(scrollHeight);
+			chatbox.revalidateScroll();
+			lastScrollDiff = scrollDiff;
+			scrollbar_resize(chatbox);
+
+			processedFingerprintValid = deferredFingerprintValid;
+			processedScrollHeight = scrollHeight;
+		}
+
+		recordMutations();
+		metrics.stop(PerformanceMetrics.Stage.DEFERRED, start);
+	}
+
+	private void processAll(Widget chatbox, Widget[] chatWidgets, Widget[] clickboxWidgets)
+	{
+		if (scanCursor < scanLimit)
+		{
+			// The last pass didn't get through every message, keep what it did get to
+			processedStates.putAll(nextProcessedStates);
+		}
+		nextProcessedStates.clear();
+		groupCount = 0;
+		cancelDeferred();
+
+		// Distances from the bottom of the chat, using the heights the game gave the messages. Fully process a screen either side of what is shown
+		boolean viewportFirst = plugin.getConfigSnapshot().isViewportFirstEnabled();
+		int viewTop = lastScrollDiff != -1 ? lastScrollDiff : chatbox.getHeight();
+		int processFrom = viewTop - chatbox.getHeight() * 2;
+		int processTo = viewTop + chatbox.getHeight();
+		int distanceFromBottom = 0;
+
+		// Only the first rebuildMessageCount groups are populated, but fall back to checking all of them if we missed the rebuild starting
+		int groupLimit = chatWidgets.length / 4;
+		if (rebuildMessageCount > 0)
+		{
+			groupLimit = min(groupLimit, rebuildMessageCount);
+		}
+
+		scanLimit = groupLimit;
+		for (; scanCursor < scanLimit; scanCursor++)
+		{
+			if (viewportFirst && distanceFromBottom >= processTo)
+			{
+				// Everything above stays where the game put it until a later tick gets to it
+				break;
+			}
+
+			ChatWidgetGroup group = scan(chatWidgets, clickboxWidgets, scanCursor);
+			if (group == null)
+			{
+				continue;
+			}
+
+			if (groupCount == 1)
+			{
+				anchorBottom = group.getY() + group.getHeight();
+			}
+
+			// The unedited height is close enough to place the message until it is processed
+			int height = group.getHeight();
+			boolean nearView = distanceFromBottom < processTo && distanceFromBottom + height > processFrom;
+			distanceFromBottom += height;
+
+			ChatWidgetGroup.ProcessedState previous = getPreviousState(group);
+			if (viewportFirst && !nearView && (previous == null || !group.matches(previous)))
+			{
+				// Replaying is cheap enough to do for everything, only the messages that need the full pass are left for later.
+				//  Placing the group before it is processed changes its widgets, so record the game's layout now
+				group.captureInput();
+				defer(groupCount - 1);
+				continue;
+			}
+
+			processOrReplay(group, previous, nextProcessedStates);
+		}
+
+		int deferred = deferredCount + scanLimit - scanCursor;
+		if (deferred > 0)
+		{
+			metrics.add(PerformanceMetrics.Counter.MESSAGES_DEFERRED, deferred);
+		}
+
+		if (scanCursor == scanLimit)
+		{
+			finishScan();
+		}
+	}
+
+	/**
+	 * Set up the next group for the message at the given index
+	 *
+	 * @return the group, or null if the message has no widgets
+	 */
+	@Nullable
+	private ChatWidgetGroup scan(Widget[] chatWidgets, Widget[] clickboxWidgets, int messageIndex)
+	{
+		int start = messageIndex * 4;
+		ChatWidgetLayout widgetLayout = ChatWidgetLayout.classify(chatWidgets, start);
+		if (widgetLayout == ChatWidgetLayout.EMPTY)
+		{
+			return null;
+		}
+
+		int messageId = messageIndex < rebuildMessageCount ? rebuildMessageIds[messageIndex] : -1;
+
+		ChatWidgetGroup group = nextGroup();
+		group.reset(chatWidgets, clickboxWidgets[messageIndex], start, widgetLayout, messageId);
+		return group;
+	}
+
+	@Nullable
+	private ChatWidgetGroup.ProcessedState getPreviousState(ChatWidgetGroup group)
+	{
+		return group.getMessageId() != -1 ? processedStates.get(group.getMessageId()) : null;
+	}
+
+	private void finishScan()
+	{
+		// Only keep what is still in the chat so this never outgrows the chat history
+		IntObjectMap<ChatWidgetGroup.ProcessedState> swap = processedStates;
+		processedStates = nextProcessedStates;
+		nextProcessedStates = swap;
+	}
+
+	/**
+	 * Place the groups one after another from the top of the chatbox
+	 *
+	 * @return the scroll height
+	 */
+	private int placeAll(Widget chatbox)
+	{
+		// Calculate this after editing messages
+		int totalHeight = 0;
+		for (int i = 0; i < groupCount; i++)
+		{
+			totalHeight += groups[i].getHeight();
+		}
+
+		// If we only have a few messages we want to place them at the bottom (chatbox.getHeight()) instead of the top (0).
+		//  If placing from the bottom, add padding first
+		int top = totalHeight >= chatbox.getHeight() ? 0 : chatbox.getHeight() - totalHeight - 2;
+		anchorBottom = top + totalHeight;
+
+		layout.clear();
+		placeFrom(0);
+
+		// If placing at the top, add padding last
+		int y = anchorBottom;
+		if (totalHeight >= chatbox.getHeight())
+		{
+			y += 2;
+		}
+
+		return max(y, chatbox.getHeight());
+	}
+
+	/**
+	 * Place the groups from the given one upwards, each directly above the one before it.
+	 * Anything below the given group is left where it is
+	 */
+	private void placeFrom(int firstGroup)
+	{
+		long placementStart = metrics.start();
+
+		// Groups are bottom to top and the layout is top to bottom
+		int y = firstGroup == 0 ? anchorBottom : layout.getY(layout.getSize() - firstGroup);
+		for (int i = firstGroup; i < groupCount; i++)
+		{
+			ChatWidgetGroup group = groups[i];
+			int height = group.getHeight();
+			y -= height;
+
+			group.place(y);
+			mutations.flush();
+			if (i < layout.getSize())
+			{
+				layout.set(layout.getSize() - 1 - i, y, height, group.getX(), group.getMessageIndentSpaces(), group.getChannelType(),
+					group.getWidgetIndex(), group.getTimestamp());
+			}
+			else
+			{
+				layout.add(y, height, group.getX(), group.getMessageIndentSpaces(), group.getChannelType(), group.getWidgetIndex(), group.getTimestamp());
+			}
+		}
+
+		metrics.stop(PerformanceMetrics.Stage.PLACEMENT, placementStart);
+	}
+
+	/**
+	 * Replay the previous result of the group's message if the game laid it out the same way, otherwise process it from scratch
+	 *
+	 * @param previous   the previous result for the group's message, if any
+	 * @param nextStates where to store the result
+	 */
+	private void processOrReplay(ChatWidgetGroup group, @Nullable ChatWidgetGroup.ProcessedState previous,
+								 IntObjectMap<ChatWidgetGroup.ProcessedState> nextStates)
+	{
+		if (previous != null && group.matches(previous))
+		{
+			group.replay(previous);
+			mutations.flush();
+			metrics.increment(PerformanceMetrics.Counter.MESSAGES_REPLAYED);
+			nextStates.put(group.getMessageId(), previous);
+		}
+		else
+		{
+			group.captureInput();
+			process(group, nextStates);
+		}
+	}
+
+	/**
+	 * Process a group whose input has already been captured and store the result
+	 */
+	private void process(ChatWidgetGroup group, IntObjectMap<ChatWidgetGroup.ProcessedState> nextStates)
+	{
+		processGroup(group);
+		// The output state is read from the widgets themselves
+		mutations.flush();
+		if (group.getMessageId() != -1)
+		{
+			nextStates.put(group.getMessageId(), group.toProcessedState());
+		}
+	}
+
+	// Widget writes and revalidates the buffer dropped during this pass
+	private void recordMutations()
+	{
+		metrics.add(PerformanceMetrics.Counter.SETTERS_AVOIDED, mutations.getSettersAvoided());
+		metrics.add(PerformanceMetrics.Counter.REVALIDATES_AVOIDED, mutations.getRevalidatesAvoided());
+		mutations.resetCounters();
+	}
+
+	private void defer(int groupIndex)
+	{
+		if (deferredCount == deferredGroups.length)
+		{
+			deferredGroups = Arrays.copyOf(deferredGroups, deferredGroups.length * 2);
+		}
+		deferredGroups[deferredCount++] = groupIndex;
+	}
+
+	private ChatWidgetGroup nextGroup()
+	{
+		if (groupCount == groups.length)
+		{
+			groups = Arrays.copyOf(groups, groups.length * 2);
+		}
+		if (groups[groupCount] == null)
+		{
+			groups[groupCount] = new ChatWidgetGroup(textMetrics, mutations);
+		}
+		return groups[groupCount++];
+	}
+
+	@Nullable
+	private Pair<ChatChannel, String> findChannelMatch(ChatWidgetGroup group)
+	{
+		// Matched against the sender like ChatBlocker does, the widget text can also hold the player name which may contain another channel's name
+		Pair<ChatChannel, String> match = messagePreprocessor.getChannelMatch(group.getMessageId());
+		if (match != null)
+		{
+			metrics.increment(PerformanceMetrics.Counter.PREPROCESSED_HITS);
+		}
+		else
+		{
+			MessageNode node = group.getMessageId() != -1 ? client.getMessages().get(group.getMessageId()) : null;
+			if (node == null)
+			{
+				return ChatChannel.findChannelMatch(group.getChannelText(), channelNameManager);
+			}
+			match = ChatChannel.findChannelMatch(node.getSender(), channelNameManager);
+		}
+
+		// Only use it if that name is what ended up in the widget
+		return match != null && sanitizeName(group.getChannelText()).contains(match.getRight()) ? match : null;
+	}
+
+	private void processGroup(ChatWidgetGroup group)
+	{
+		CleanChatConfigSnapshot config = plugin.getConfigSnapshot();
+		metrics.increment(PerformanceMetrics.Counter.MESSAGES_PROCESSED);
+
+		long start = metrics.start();
+
+		// Channel indent is calculated after everything else about the channel has been edited
+		String indentChannelName = null;
+		String indentChannelText = null;
+
+		if (!group.getChannelText().isEmpty())
+		{
+			Pair<ChatChannel, String> match = findChannelMatch(group);
+			if (match != null)
+			{
+				ChatChannel channel = match.getLeft();
+				String matchedChannelName = match.getRight();
+				String widgetChannelText = sanitizeName(group.getChannelText());
+				String shortName = channel.getShortName(channelNameManager, matchedChannelName);
+
+				group.setChannelType(channel);
+
+				if (channel.isChannelNameRemovalEnabled(config))
+				{
+					group.removeFromChannel(matchedChannelName);
+
+					matchedChannelName = wrapWithBrackets(matchedChannelName);
+				}
+				else if (!shortName.isBlank() && !channel.isShortNameDefault(channelNameManager))
+				{
+					String updatedChannelText = group.replaceChannelName(matchedChannelName, shortName);
+
+					matchedChannelName = sanitizeName(shortName);
+					widgetChannelText = sanitizeName(updatedChannelText);
+				}
+				else
+				{
+					matchedChannelName = wrapWithBrackets(matchedChannelName);
+				}
+
+				if (channel.isRemoveRankEnabled(config))
+				{
+					group.removeRank();
+				}
+
+				if (channel != ChatChannel.FRIENDS_CHAT)
+				{
+					indentChannelName = matchedChannelName;
+					indentChannelText = widgetChannelText;
+				}
+			}
+		}
+
+		metrics.stop(PerformanceMetrics.Stage.CHANNEL_MATCH, start);
+		start = metrics.start();
+
+		if (indentChannelName != null)
+		{
+			group.calculateChannelIndent(config, indentChannelName, indentChannelText,
+				plugin.getTimestampTemplateWidth(), plugin.isFixedWidthTimestampEnabled());
+		}
+
+		if (plugin.isFixedWidthTimestampEnabled())
+		{
+			group.extractTimestamp(plugin.getTimestampColumns(), plugin.getTimestampTemplateWidth());
+		}
+
+		group.applyIndent();
+
+		metrics.stop(PerformanceMetrics.Stage.INDENT, start);
+		start = metrics.start();
+
+		// Calculate height last
+		group.calculateHeight();
+
+		metrics.stop(PerformanceMetrics.Stage.HEIGHT, start);
 	}
 
 	// Script 72
@@ -1,67 +1,121 @@
 package com.github.ldavid432.cleanchat;
 
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.getTextLength;
-import static com.github.ldavid432.cleanchat.util.CleanChatUtil.getTextLineCount;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.wrapWithBrackets;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.wrapWithChannelNameRegex;
 import com.github.ldavid432.cleanchat.data.ChatChannel;
 import com.github.ldavid432.cleanchat.util.FormatterExtractor;
+import com.github.ldavid432.cleanchat.util.TextMetricsCache;
+import com.github.ldavid432.cleanchat.util.TimestampColumns;
 import static java.lang.Math.max;
+import java.util.Objects;
 import javax.annotation.Nullable;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.widgets.Widget;
 
+/**
+ * Processes the widgets of a single chat message. Instances are pooled by {@link ChatWidgetEditor} and {@link #reset} for each message.
+ */
 @Slf4j
-@RequiredArgsConstructor
 public class ChatWidgetGroup
 {
-	private final Widget channel;
-	private final Widget rank;
-	private final Widget name;
-	private final Widget message;
-	private final Widget clickBox;
+	private final TextMetricsCache textMetrics;
+	// Edits go through here so each widget is written once when the editor flushes it
+	private final WidgetMutationBuffer mutations;
+
+	private Widget channel;
+	private Widget rank;
+	private Widget name;
+	private Widget message;
+	private Widget clickBox;
+
+	// -1 if the message this group was built for is unknown
+	@Getter
+	private int messageId;
+
+	// Index of this message's first widget in the chatbox dynamic children
+	@Getter
+	private int widgetIndex;
+
+	@Getter
+	private ChatWidgetLayout widgetLayout;
 
 	@Getter
 	@Setter
 	@Nullable
 	private ChatChannel channelType = null;
 
+	@Getter
 	private int messageIndentSpaces = 0;
 	private int channelIndentSpaces = 0;
 
+	private int lineCount = 0;
+
+	// See TimestampColumns.toChars
 	@Getter
 	@Nullable
-	private FormatterExtractor.ExtractionResult timestamp = null;
+	private char[] timestamp = null;
+
+	// State of the widgets as the game laid them out, before we edited them
+	private WidgetState[] inputState = null;
+
+	public ChatWidgetGroup(TextMetricsCache textMetrics, WidgetMutationBuffer mutations)
+	{
+		this.textMetrics = textMetrics;
+		this.mutations = mutations;
+	}
+
+	/**
+	 * @param chatWidgets dynamic children of the chatbox
+	 * @param widgetIndex index of this message's first widget in chatWidgets
+	 */
+	public void reset(Widget[] chatWidgets, Widget clickBox, int widgetIndex, ChatWidgetLayout widgetLayout, int messageId)
+	{
+		this.channel = chatWidgets[widgetIndex + widgetLayout.getChannelOffset()];
+		this.rank = chatWidgets[widgetIndex + widgetLayout.getRankOffset()];
+		this.name = chatWidgets[widgetIndex + widgetLayout.getNameOffset()];
+		this.message = chatWidgets[widgetIndex + widgetLayout.getMessageOffset()];
+		this.clickBox = clickBox;
+		this.widgetIndex = widgetIndex;
+		this.widgetLayout = widgetLayout;
+		this.messageId = messageId;
+
+		channelType = null;
+		messageIndentSpaces = 0;
+		channelIndentSpaces = 0;
+		lineCount = 0;
+		timestamp = null;
+		inputState = null;
+	}
 
 	public String getChannelText()
 	{
-		return channel.getText();
+		return mutations.getText(channel);
 	}
 
 	public int getHeight()
 	{
-		return message.getHeight();
+		return mutations.getHeight(message);
 	}
 
 	public int getY()
 	{
-		if (channel.isHidden())
-		{
-			return message.getCanvasLocation().getY();
-		}
-		return channel.getCanvasLocation().getY();
+		return mutations.getOriginalY(message);
 	}
 
+	/**
+	 * @return x of the start of this message relative to the chatbox
+	 */
 	public int getX()
 	{
-		if (channel.isHidden())
+		if (mutations.isHidden(channel))
 		{
-			return message.getCanvasLocation().getX();
+			return mutations.getOriginalX(message);
 		}
-		return channel.getCanvasLocation().getX();
+		return mutations.getOriginalX(channel);
 	}
 
 	public void place(final int y)
@@ -71,33 +125,36 @@ public class ChatWidgetGroup
 		place(name, y);
 		place(message, y);
 
-		clickBox.setOriginalY(y);
-		clickBox.setHidden(false);
-		clickBox.revalidate();
+		mutations.setOriginalY(clickBox, y);
+		mutations.setHidden(clickBox, false);
+		mutations.revalidate(clickBox);
 	}
 
 	public void calculateHeight()
 	{
-		if (!message.getText().isEmpty() && message.getWidth() > 0)
+		String messageText = mutations.getText(message);
+		int messageWidth = mutations.getWidth(message);
+		if (!messageText.isEmpty() && messageWidth > 0)
 		{
-			int numLines = getTextLineCount(message.getText(), message.getWidth(), messageIndentSpaces);
+			int numLines = textMetrics.getTextLineCount(messageText, messageWidth, messageIndentSpaces);
+			lineCount = numLines;
 			int height = numLines * 14; // Height of each line is always 14
-			message.setOriginalHeight(height);
-			message.revalidate();
+			mutations.setOriginalHeight(message, height);
+			mutations.revalidate(message);
 
-			clickBox.setOriginalHeight(height);
-			clickBox.revalidate();
+			mutations.setOriginalHeight(clickBox, height);
+			mutations.revalidate(clickBox);
 		}
 	}
 
-	public void calculateChannelIndent(CleanChatChannelsConfig config, String matchedChannelName, String widgetChannelText,
+	public void calculateChannelIndent(CleanChatConfigSnapshot config, String matchedChannelName, String widgetChannelText,
 									   int timestampWidth, boolean isFixedWidthTimestampEnabled)
 	{
 		if (channelType == ChatChannel.FRIENDS_CHAT)
 		{
 			// For some reason the fc channel width is the entire length of the chatbox so to make things easier we adjust that here
-			channel.setOriginalWidth(message.getOriginalX() - channel.getOriginalX());
-			channel.revalidate();
+			mutations.setOriginalWidth(channel, mutations.getOriginalX(message) - mutations.getOriginalX(channel));
+			mutations.revalidate(channel);
 		}
 
 		int startOfChannel = widgetChannelText.indexOf(matchedChannelName);
@@ -111,7 +168,7 @@ public class ChatWidgetGroup
 		// TODO: See if there's something that we are missing when measuring so we can avoid adding all these hardcoded offsets
 		if (channelType != null)
 		{
-			switch (config.indentationMode())
+			switch (config.getIndentationMode())
 			{
 				// Intentionally fallthrough
 				case START:
@@ -119,7 +176,7 @@ public class ChatWidgetGroup
 					if (isFixedWidthTimestampEnabled)
 					{
 						String prefix = widgetChannelText.substring(0, startOfChannel);
-						prefixWidth = getTextLength(prefix);
+						prefixWidth = textMetrics.getTextLength(prefix);
 						indentWidth += prefixWidth;
 
 						if (channelType.isChannelNameRemovalEnabled(config))
@@ -138,7 +195,7 @@ public class ChatWidgetGroup
 					if (!channelType.isChannelNameRemovalEnabled(config))
 					{
 						String channel = widgetChannelText.substring(startOfChannel, endOfChannel);
-						channelWidth = getTextLength(channel);
+						channelWidth = textMetrics.getTextLength(channel);
 						indentWidth += channelWidth;
 
 						if (channelType != ChatChannel.FRIENDS_CHAT)
@@ -157,24 +214,24 @@ public class ChatWidgetGroup
 					{
 						if (isFixedWidthTimestampEnabled)
 						{
-							nameWidth = (channel.getWidth() - timestampWidth) - channelWidth;
+							nameWidth = (mutations.getWidth(channel) - timestampWidth) - channelWidth;
 						}
 						else
 						{
-							nameWidth = channel.getWidth() - prefixWidth - channelWidth;
+							nameWidth = mutations.getWidth(channel) - prefixWidth - channelWidth;
 						}
 					}
 					else
 					{
-						if (!name.getText().isEmpty() && !name.isHidden())
+						if (!mutations.getText(name).isEmpty() && !mutations.isHidden(name))
 						{
-							nameWidth = name.getWidth();
+							nameWidth = mutations.getWidth(name);
 						}
 					}
 
-					if (!rank.isHidden())
+					if (!mutations.isHidden(rank))
 					{
-						nameWidth += rank.getWidth();
+						nameWidth += mutations.getWidth(rank);
 					}
 
 					indentWidth += nameWidth;
@@ -198,16 +255,17 @@ public class ChatWidgetGroup
 
 			if (messageIndentSpaces > 0)
 			{
-				message.setOriginalX(message.getOriginalX() - indentWidth);
-				message.setOriginalWidth(message.getOriginalWidth() + indentWidth);
-				message.revalidate();
+				mutations.setOriginalX(message, mutations.getOriginalX(message) - indentWidth);
+				mutations.setOriginalWidth(message, mutations.getOriginalWidth(message) + indentWidth);
+				mutations.revalidate(message);
 			}
 		}
 	}
 
 	public void applyIndent()
 	{
-		if (channel.isHidden() && channelIndentSpaces > 0)
+		boolean channelHidden = mutations.isHidden(channel);
+		if (channelHidden && channelIndentSpaces > 0)
 		{
 			messageIndentSpaces += channelIndentSpaces;
 		}
@@ -215,14 +273,14 @@ public class ChatWidgetGroup
 		if (messageIndentSpaces > 0)
 		{
 			// Using spaces to keep the first line at the initial position (+/-2 pixels)
-			message.setText(" ".repeat(messageIndentSpaces) + message.getText());
-			message.revalidate();
+			mutations.setText(message, " ".repeat(messageIndentSpaces) + mutations.getText(message));
+			mutations.revalidate(message);
 		}
 
-		if (channelIndentSpaces > 0 && !channel.isHidden())
+		if (channelIndentSpaces > 0 && !channelHidden)
 		{
-			channel.setText(" ".repeat(channelIndentSpaces) + channel.getText());
-			channel.revalidate();
+			mutations.setText(channel, " ".repeat(channelIndentSpaces) + mutations.getText(channel));
+			mutations.revalidate(channel);
 		}
 	}
 
@@ -233,11 +291,11 @@ public class ChatWidgetGroup
 
 	public String replaceChannelName(String text, String newChannelName)
 	{
-		int currentWidth = getTextLength(wrapWithBrackets(text));
-		int newWidth = getTextLength(newChannelName);
+		int currentWidth = textMetrics.getTextLength(wrapWithBrackets(text));
+		int newWidth = textMetrics.getTextLength(newChannelName);
 		int removedWidth = currentWidth - newWidth;
 
-		String newText = channel.getText()
+		String newText = mutations.getText(channel)
 			// TODO: Target the channel name more precisely, this should do for now to avoid targeting timestamps in brackets
 			.replaceFirst(wrapWithChannelNameRegex(text), newChannelName);
 
@@ -255,7 +313,7 @@ public class ChatWidgetGroup
 			removedWidth += getTextLength(" ");
 		}
 
-		channel.setText(newText);
+		mutations.setText(channel, newText);
 
 		// Shift widgets X left if channel was removed
 		shiftLeft(rank, removedWidth);
@@ -263,23 +321,21 @@ public class ChatWidgetGroup
 		shiftLeft(message, removedWidth);
 
 		// Expand the width of messages if channel was removed
-		message.setOriginalWidth(message.getOriginalWidth() + removedWidth);
-		message.revalidate();
+		expand(message, removedWidth);
 
 		// Reduce channel width if it was removed
-		channel.setOriginalWidth(channel.getOriginalWidth() - removedWidth);
-		channel.revalidate();
+		expand(channel, -removedWidth);
 
 		return newText;
 	}
 
 	public void removeRank()
 	{
-		if (!rank.isHidden())
+		if (!mutations.isHidden(rank))
 		{
-			rank.setHidden(true);
+			mutations.setHidden(rank, true);
 
-			int removedWidth = rank.getWidth();
+			int removedWidth = mutations.getWidth(rank);
 
 			shiftLeft(name, removedWidth);
 			shiftLeft(message, removedWidth);
@@ -291,34 +347,36 @@ public class ChatWidgetGroup
 
 	private void shiftLeft(Widget widget, int width)
 	{
-		widget.setOriginalX(widget.getOriginalX() - width);
-		widget.revalidate();
+		mutations.setOriginalX(widget, mutations.getOriginalX(widget) - width);
+		mutations.revalidate(widget);
 	}
 
 	private void expand(Widget widget, int width)
 	{
-		widget.setOriginalWidth(widget.getOriginalWidth() + width);
-		widget.revalidate();
+		mutations.setOriginalWidth(widget, mutations.getOriginalWidth(widget) + width);
+		mutations.revalidate(widget);
 	}
 
 	private void place(Widget widget, int y)
 	{
-		widget.setOriginalY(y);
-		widget.revalidate();
+		mutations.setOriginalY(widget, y);
+		mutations.revalidate(widget);
 	}
 
-	public void extractTimestamp(FormatterExtractor.ExtractionResult template, int timestampWidth)
+	public void extractTimestamp(@Nullable TimestampColumns columns, int timestampWidth)
 	{
-		if (template == null)
+		timestamp = null;
+		if (columns == null)
 		{
-			timestamp = null;
 			return;
 		}
 
+		FormatterExtractor.ExtractionResult template = columns.getTemplate();
+
 		Widget widget;
 		Widget oppositeWidget;
 
-		if (!message.getText().isEmpty())
+		if (!mutations.getText(message).isEmpty())
 		{
 			widget = message;
 			oppositeWidget = channel;
@@ -329,15 +387,15 @@ public class ChatWidgetGroup
 			oppositeWidget = message;
 		}
 
-		timestamp = FormatterExtractor.extractFromText(template, widget.getText());
+		FormatterExtractor.ExtractionResult extracted = FormatterExtractor.extractFromText(template, mutations.getText(widget));
 
-		if (timestamp == null)
+		if (extracted == null)
 		{
-			timestamp = FormatterExtractor.extractFromText(template, oppositeWidget.getText());
+			extracted = FormatterExtractor.extractFromText(template, mutations.getText(oppositeWidget));
 
-			if (timestamp == null)
+			if (extracted == null)
 			{
-				log.debug("Timestamp could not be extracted from template: `{}`, widget:`{}`, or opposite widget:`{}`", template, widget.getText(), oppositeWidget.getText());
+				log.debug("Timestamp could not be extracted from template: `{}`, widget:`{}`, or opposite widget:`{}`", template, mutations.getText(widget), mutations.getText(oppositeWidget));
 				return;
 			}
 			else
@@ -346,11 +404,127 @@ public class ChatWidgetGroup
 			}
 		}
 
-		widget.setText(timestamp.getRemainingText());
+		timestamp = columns.toChars(extracted);
+		mutations.setText(widget, extracted.getRemainingText());
 
 		channelIndentSpaces += max(0, timestampWidth / 3);
 	}
 
+	private Widget[] getWidgets()
+	{
+		return new Widget[]{channel, rank, name, message, clickBox};
+	}
+
+	private static WidgetState[] captureState(Widget[] widgets)
+	{
+		WidgetState[] states = new WidgetState[widgets.length];
+		for (int i = 0; i < widgets.length; i++)
+		{
+			states[i] = WidgetState.of(widgets[i]);
+		}
+		return states;
+	}
+
+	/**
+	 * Record how the game laid out this group, must be called before editing any widgets
+	 */
+	public void captureInput()
+	{
+		inputState = captureState(getWidgets());
+	}
+
+	/**
+	 * Compares the widgets directly so checking an unchanged message doesn't allocate, must be called before editing any widgets
+	 *
+	 * @return true if the game laid out this group the same way as when the given state was processed
+	 */
+	public boolean matches(ProcessedState state)
+	{
+		WidgetState[] input = state.getInput();
+		return input[0].matches(channel) && input[1].matches(rank) && input[2].matches(name)
+			&& input[3].matches(message) && input[4].matches(clickBox);
+	}
+
+	public ProcessedState toProcessedState()
+	{
+		return new ProcessedState(inputState, captureState(getWidgets()), channelType, timestamp, messageIndentSpaces, lineCount);
+	}
+
+	/**
+	 * Apply the result of a previous processing pass instead of redoing all the measuring and matching
+	 */
+	public void replay(ProcessedState state)
+	{
+		channelType = state.getChannelType();
+		timestamp = state.getTimestamp();
+		messageIndentSpaces = state.getMessageIndentSpaces();
+		lineCount = state.getLineCount();
+
+		replay(state, 0, channel);
+		replay(state, 1, rank);
+		replay(state, 2, name);
+		replay(state, 3, message);
+		replay(state, 4, clickBox);
+	}
+
+	private void replay(ProcessedState state, int index, Widget widget)
+	{
+		if (!state.getOutput()[index].equals(state.getInput()[index]))
+		{
+			state.getOutput()[index].apply(mutations, widget);
+		}
+	}
+
+	/**
+	 * The parts of a widget that processing a group can change
+	 */
+	@Value
+	static class WidgetState
+	{
+		String text;
+		int x;
+		int width;
+		int height;
+		boolean hidden;
+
+		static WidgetState of(Widget widget)
+		{
+			return new WidgetState(widget.getText(), widget.getOriginalX(), widget.getOriginalWidth(), widget.getOriginalHeight(), widget.isHidden());
+		}
+
+		boolean matches(Widget widget)
+		{
+			return x == widget.getOriginalX() && width == widget.getOriginalWidth() && height == widget.getOriginalHeight()
+				&& hidden == widget.isHidden() && Objects.equals(text, widget.getText());
+		}
+
+		void apply(WidgetMutationBuffer mutations, Widget widget)
+		{
+			mutations.setText(widget, text);
+			mutations.setOriginalX(widget, x);
+			mutations.setOriginalWidth(widget, width);
+			mutations.setOriginalHeight(widget, height);
+			mutations.setHidden(widget, hidden);
+			mutations.revalidate(widget);
+		}
+	}
+
+	/**
+	 * Everything needed to replay the processing of a group onto a later rebuild of the same message
+	 */
+	@Value
+	public static class ProcessedState
+	{
+		WidgetState[] input;
+		WidgetState[] output;
+		@Nullable
+		ChatChannel channelType;
+		@Nullable
+		char[] timestamp;
+		int messageIndentSpaces;
+		int lineCount;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -360,7 +534,7 @@ public class ChatWidgetGroup
 			"name=" + name.getText() + ",\n" +
 			"message=" + message.getText() + ",\n" +
 			"channelType=" + (channelType != null ? channel.getName() : null) + ",\n" +
-			"timestamp=" + (timestamp != null ? timestamp.getFormattedOutput() : null) + "\n" +
+			"timestamp=" + (timestamp != null ? new String(timestamp) : null) + "\n" +
 			'}';
 	}
 }
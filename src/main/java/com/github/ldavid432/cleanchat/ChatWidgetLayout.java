@@ -0,0 +1,94 @@
+package com.github.ldavid432.cleanchat;
+
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.CLAN_INSTRUCTION_MESSAGE;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.runelite.api.widgets.Widget;
+import net.runelite.client.util.Text;
+
+/**
+ * Which of the 4 dynamic children of a message hold what, see the layout comment in {@link ChatWidgetEditor}.
+ * Offsets are relative to the first widget of the message.
+ */
+@Getter
+@AllArgsConstructor
+public enum ChatWidgetLayout
+{
+	// [0] = username, [1] = message, [2] = timestamp + channel, [3] = rank
+	NORMAL(2, 3, 0, 1),
+	// Friends game and console messages: [0] = timestamp + message, nothing else
+	//  (except the 'now talking...' message specifically, which has the CLAN chat join message at [1]...)
+	FRIENDS_CHAT(2, 3, 1, 0),
+	// Friends chats and GIM broadcasts: [0] = channel (+ username), [1] = message
+	//  (also the clan instruction after world hopping: [0] = message, [1] = 'did you know?' tip)
+	SPECIAL(0, 3, 2, 1),
+	// GIM or Clan broadcast after world hopping: [1] = message, nothing else - just use the default setup since we mainly care about the message
+	POST_HOP_BROADCAST(2, 3, 0, 1),
+	// No message at all
+	EMPTY(2, 3, 0, 1),
+	;
+
+	private final int channelOffset;
+	private final int rankOffset;
+	private final int nameOffset;
+	private final int messageOffset;
+
+	// Indexed by which of the 4 children have text, bit n set if [n] has text
+	private static final ChatWidgetLayout[] BY_PRESENCE = new ChatWidgetLayout[16];
+
+	static
+	{
+		for (int presence = 0; presence < BY_PRESENCE.length; presence++)
+		{
+			boolean first = (presence & 0b0001) != 0;
+			boolean second = (presence & 0b0010) != 0;
+			boolean channel = (presence & 0b0100) != 0;
+
+			if (channel)
+			{
+				BY_PRESENCE[presence] = NORMAL;
+			}
+			else if (first)
+			{
+				BY_PRESENCE[presence] = second ? SPECIAL : FRIENDS_CHAT;
+			}
+			else
+			{
+				BY_PRESENCE[presence] = second ? POST_HOP_BROADCAST : EMPTY;
+			}
+		}
+	}
+
+	/**
+	 * @param presence        bit n set if child [n] of the message has text
+	 * @param clanInstruction if [1] is the clan instruction message
+	 */
+	public static ChatWidgetLayout of(int presence, boolean clanInstruction)
+	{
+		ChatWidgetLayout layout = BY_PRESENCE[presence & 0b1111];
+		return layout == SPECIAL && clanInstruction ? FRIENDS_CHAT : layout;
+	}
+
+	/**
+	 * @param start index of the first widget of the message
+	 */
+	public static ChatWidgetLayout classify(Widget[] widgets, int start)
+	{
+		int presence = 0;
+		for (int i = 0; i < 4; i++)
+		{
+			if (!widgets[start + i].getText().isEmpty())
+			{
+				presence |= 1 << i;
+			}
+		}
+
+		ChatWidgetLayout layout = of(presence, false);
+		// Only worth removing tags when it could change the result
+		if (layout == SPECIAL && Text.removeTags(widgets[start + 1].getText()).equals(CLAN_INSTRUCTION_MESSAGE))
+		{
+			return FRIENDS_CHAT;
+		}
+		return layout;
+	}
+}
@@ -19,6 +19,8 @@ public interface CleanChatChannelsConfig extends Config
 {
 	String GROUP = "cleanchat";
 	String HIDE_SCROLLBAR_KEY = "hideScrollbar";
+	// RS profile key holding the remembered channel names, not shown in the panel
+	String CHANNEL_NAMES_KEY = "channelNames";
 	int CURRENT_VERSION = 3;
 	String DEFAULT_CUSTOM_CHANNEL_NAME = wrapWithBrackets(wrapWithColorTag(CURRENT_CLAN_REPLACER, Color.BLUE));
 
@@ -471,4 +473,38 @@ public interface CleanChatChannelsConfig extends Config
 
 	// TODO: Friends chat rank? Can you even see those?
 
+	@ConfigSection(
+		name = "Debug",
+		description = "Tools for diagnosing chat performance",
+		position = 40,
+		closedByDefault = true
+	)
+	String debugSection = "debugSection";
+
+	@ConfigItem(
+		keyName = "performanceOverlay",
+		name = "Performance overlay",
+		description = "Show how long each stage of processing the chatbox takes<br>" +
+			"Timings are only recorded while this is on",
+		section = debugSection,
+		position = 0
+	)
+	default boolean isPerformanceOverlayEnabled()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "viewportFirst",
+		name = "Viewport-first processing",
+		description = "Clean the messages around the current scroll position first and finish the rest of the history over the next few ticks<br>" +
+			"Helps with very long chat histories, older messages may briefly appear uncleaned when scrolling up right after a rebuild",
+		section = debugSection,
+		position = 1
+	)
+	default boolean isViewportFirstEnabled()
+	{
+		return false;
+	}
+
 }
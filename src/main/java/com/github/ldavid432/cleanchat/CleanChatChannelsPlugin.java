@@ -1,10 +1,15 @@
 package com.github.ldavid432.cleanchat;
 
+import static com.github.ldavid432.cleanchat.CleanChatChannelsConfig.CHANNEL_NAMES_KEY;
 import static com.github.ldavid432.cleanchat.CleanChatChannelsConfig.HIDE_SCROLLBAR_KEY;
 import com.github.ldavid432.cleanchat.overlay.ChatColorBarOverlay;
 import com.github.ldavid432.cleanchat.overlay.ChatTimestampOverlay;
+import com.github.ldavid432.cleanchat.overlay.PerformanceOverlay;
 import com.github.ldavid432.cleanchat.util.ChangeLogUtil;
-import com.github.ldavid432.cleanchat.util.FormatterExtractor;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.github.ldavid432.cleanchat.util.TextMeasurementService;
+import com.github.ldavid432.cleanchat.util.TextMetricsCache;
+import com.github.ldavid432.cleanchat.util.TimestampColumns;
 import com.google.inject.Provides;
 import java.util.Objects;
 import javax.annotation.Nullable;
@@ -58,6 +63,12 @@ public class CleanChatChannelsPlugin extends Plugin
 	@Inject
 	private ChatBlocker chatBlocker;
 
+	@Inject
+	private ChatRefreshScheduler refreshScheduler;
+
+	@Inject
+	private MessagePreprocessor messagePreprocessor;
+
 	@Inject
 	private EventBus eventBus;
 
@@ -79,10 +90,22 @@ public class CleanChatChannelsPlugin extends Plugin
 	@Inject
 	private ChatTimestampOverlay timestampOverlay;
 
+	@Inject
+	private PerformanceOverlay performanceOverlay;
+
+	@Inject
+	private TextMetricsCache textMetrics;
+
+	@Inject
+	private TextMeasurementService measurementService;
+
+	@Inject
+	private PerformanceMetrics metrics;
+
 	@Getter
 	@Setter
 	@Nullable
-	private FormatterExtractor.ExtractionResult timestampTemplate = null;
+	private TimestampColumns timestampColumns = null;
 
 	@Getter
 	@Setter
@@ -90,9 +113,12 @@ public class CleanChatChannelsPlugin extends Plugin
 
 	private boolean timestampPluginEnabled = false;
 
+	@Getter
+	private CleanChatConfigSnapshot configSnapshot;
+
 	public boolean isFixedWidthTimestampEnabled()
 	{
-		return config.isFixedWidthTimestampEnabled() && timestampPluginEnabled;
+		return configSnapshot.isFixedWidthTimestampEnabled() && timestampPluginEnabled;
 	}
 
 	@Provides
@@ -104,8 +130,13 @@ public class CleanChatChannelsPlugin extends Plugin
 	@Override
 	protected void startUp() throws Exception
 	{
+		configSnapshot = CleanChatConfigSnapshot.of(config);
+		metrics.setEnabled(configSnapshot.isPerformanceOverlayEnabled());
 		timestampPluginEnabled = pluginManager.isPluginEnabled(timestampPlugin);
 
+		eventBus.register(refreshScheduler);
+		measurementService.startUp();
+		eventBus.register(messagePreprocessor);
 		eventBus.register(chatBlocker);
 		eventBus.register(chatWidgetEditor);
 		eventBus.register(channelNameManager);
@@ -114,13 +145,14 @@ public class CleanChatChannelsPlugin extends Plugin
 		overlayManager.add(timestampOverlay);
 		timestampOverlay.startUp();
 		overlayManager.add(colorBarOverlay);
+		overlayManager.add(performanceOverlay);
 
 		clientThread.invoke(() -> handleScrollbarVisibility());
 
 		if (client.getGameState() == GameState.LOGGED_IN)
 		{
 			log.debug("Plugin enabled. Refreshing chat.");
-			client.refreshChat();
+			refreshScheduler.requestRefresh();
 		}
 
 		ChangeLogUtil.handleChangelog(config, chatMessageManager, client);
@@ -129,27 +161,47 @@ public class CleanChatChannelsPlugin extends Plugin
 	@Override
 	protected void shutDown() throws Exception
 	{
+		eventBus.unregister(refreshScheduler);
+		refreshScheduler.clear();
+		eventBus.unregister(messagePreprocessor);
+		messagePreprocessor.clear();
 		eventBus.unregister(chatBlocker);
 		eventBus.unregister(chatWidgetEditor);
+		clientThread.invoke(() -> chatWidgetEditor.clearCache());
+		chatBlocker.clearCache();
+		textMetrics.clear();
+		measurementService.shutDown();
 		eventBus.unregister(channelNameManager);
 		channelNameManager.shutdown();
 		overlayManager.remove(timestampOverlay);
 		eventBus.unregister(timestampOverlay);
 		overlayManager.remove(colorBarOverlay);
+		overlayManager.remove(performanceOverlay);
+		clientThread.invoke(() -> metrics.setEnabled(false));
 
 		// Remove all our shenanigans
 		log.debug("Plugin disabled. Refreshing chat.");
-		clientThread.invoke(() -> handleScrollbarVisibility(false));
+		clientThread.invoke(() -> {
+			handleScrollbarVisibility(false);
+			// The scheduler is already unregistered
+			client.refreshChat();
+		});
 		client.refreshChat();
 	}
 
 	@Subscribe
 	public void onConfigChanged(ConfigChanged event)
 	{
-		if (Objects.equals(event.getGroup(), CleanChatChannelsConfig.GROUP))
+		if (Objects.equals(event.getGroup(), CleanChatChannelsConfig.GROUP) && !Objects.equals(event.getKey(), CHANNEL_NAMES_KEY))
 		{
 			log.debug("Config changed. Refreshing chat.");
-			client.refreshChat();
+			configSnapshot = CleanChatConfigSnapshot.of(config);
+			boolean performanceOverlayEnabled = configSnapshot.isPerformanceOverlayEnabled();
+			clientThread.invoke(() -> {
+				metrics.setEnabled(performanceOverlayEnabled);
+				chatWidgetEditor.clearCache();
+			});
+			refreshScheduler.requestRefresh();
 
 			if (Objects.equals(event.getKey(), HIDE_SCROLLBAR_KEY))
 			{
@@ -160,7 +212,8 @@ public class CleanChatChannelsPlugin extends Plugin
 		{
 			timestampPluginEnabled = pluginManager.isPluginEnabled(timestampPlugin);
 			log.debug("Timestamp plugin toggled. Refreshing chat.");
-			client.refreshChat();
+			clientThread.invoke(() -> chatWidgetEditor.clearCache());
+			refreshScheduler.requestRefresh();
 		}
 	}
 
@@ -193,7 +246,7 @@ public class CleanChatChannelsPlugin extends Plugin
 			}
 			chatbox.revalidate();
 
-			client.refreshChat();
+			refreshScheduler.requestRefresh();
 		}
 	}
 
@@ -0,0 +1,161 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatBlock;
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.data.ChatTab;
+import com.github.ldavid432.cleanchat.data.IndentMode;
+import com.github.ldavid432.cleanchat.util.AhoCorasickMatcher;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+
+/**
+ * Immutable copy of the config values read while rebuilding the chatbox and rendering overlays.
+ * Every config proxy call goes through the ConfigManager so this is rebuilt once per config change instead.
+ */
+public final class CleanChatConfigSnapshot
+{
+	private static final AtomicInteger NEXT_EPOCH = new AtomicInteger();
+
+	// Unique per snapshot so anything derived from the config can tell when it is stale
+	@Getter
+	private final int epoch = NEXT_EPOCH.incrementAndGet();
+
+	@Getter
+	private final IndentMode indentationMode;
+	@Getter
+	private final boolean fixedWidthTimestampEnabled;
+
+	@Getter
+	private final boolean colorBarEnabled;
+	@Getter
+	private final int colorBarOffset;
+	@Getter
+	private final int colorBarWidth;
+	@Getter
+	private final Color noChannelColor;
+
+	@Getter
+	private final boolean performanceOverlayEnabled;
+	@Getter
+	private final boolean viewportFirstEnabled;
+
+	// Bitsets indexed by ChatChannel ordinal
+	private final int channelNameRemovalChannels;
+	private final int removeRankChannels;
+	// Indexed by ChatTab ordinal, bitsets indexed by ChatChannel ordinal
+	private final int[] tabBlockedChannels;
+	private final Map<ChatChannel, Color> channelColors;
+
+	// Bitset indexed by ChatBlock ordinal
+	private final int enabledBlocks;
+	// Messages of the enabled blocks, in ChatBlock order
+	private final ChatBlock[] blockMatches;
+	private final AhoCorasickMatcher blockMatcher;
+
+	private CleanChatConfigSnapshot(CleanChatChannelsConfig config)
+	{
+		indentationMode = config.indentationMode();
+		fixedWidthTimestampEnabled = config.isFixedWidthTimestampEnabled();
+
+		colorBarEnabled = config.isColorBarEnabled();
+		colorBarOffset = config.colorBarOffset();
+		colorBarWidth = config.colorBarWidth();
+		noChannelColor = config.noChannelColor();
+
+		performanceOverlayEnabled = config.isPerformanceOverlayEnabled();
+		viewportFirstEnabled = config.isViewportFirstEnabled();
+
+		int channelNameRemoval = 0;
+		int removeRank = 0;
+		tabBlockedChannels = new int[ChatTab.values().length];
+		channelColors = new EnumMap<>(ChatChannel.class);
+		for (ChatChannel channel : ChatChannel.values())
+		{
+			int bit = 1 << channel.ordinal();
+
+			if (channel.isChannelNameRemovalEnabled(config))
+			{
+				channelNameRemoval |= bit;
+			}
+
+			if (channel.isRemoveRankEnabled(config))
+			{
+				removeRank |= bit;
+			}
+
+			for (ChatTab tab : ChatTab.values())
+			{
+				if (channel.isTabBlocked(config, tab))
+				{
+					tabBlockedChannels[tab.ordinal()] |= bit;
+				}
+			}
+
+			channelColors.put(channel, channel.getColor(config));
+		}
+		channelNameRemovalChannels = channelNameRemoval;
+		removeRankChannels = removeRank;
+
+		int blocks = 0;
+		List<ChatBlock> enabled = new ArrayList<>();
+		List<String> blockMessages = new ArrayList<>();
+		for (ChatBlock block : ChatBlock.values())
+		{
+			if (block.isEnabled(config))
+			{
+				blocks |= 1 << block.ordinal();
+				enabled.add(block);
+				blockMessages.add(block.getMessage());
+			}
+		}
+		enabledBlocks = blocks;
+		blockMatches = enabled.toArray(new ChatBlock[0]);
+		blockMatcher = new AhoCorasickMatcher(blockMessages, false);
+	}
+
+	public static CleanChatConfigSnapshot of(CleanChatChannelsConfig config)
+	{
+		return new CleanChatConfigSnapshot(config);
+	}
+
+	public boolean isChannelNameRemovalEnabled(ChatChannel channel)
+	{
+		return (channelNameRemovalChannels & (1 << channel.ordinal())) != 0;
+	}
+
+	public boolean isRemoveRankEnabled(ChatChannel channel)
+	{
+		return (removeRankChannels & (1 << channel.ordinal())) != 0;
+	}
+
+	public boolean isTabBlocked(ChatChannel channel, ChatTab tab)
+	{
+		return (tabBlockedChannels[tab.ordinal()] & (1 << channel.ordinal())) != 0;
+	}
+
+	public Color getColor(ChatChannel channel)
+	{
+		return channelColors.get(channel);
+	}
+
+	public boolean isBlockEnabled(ChatBlock block)
+	{
+		return (enabledBlocks & (1 << block.ordinal())) != 0;
+	}
+
+	/**
+	 * Checks every enabled block against the message in a single scan
+	 *
+	 * @return the first enabled block contained in the message (with tags removed), or null if none are
+	 */
+	public ChatBlock findBlock(String message)
+	{
+		int index = blockMatcher.findFirst(message);
+		return index != -1 ? blockMatches[index] : null;
+	}
+}
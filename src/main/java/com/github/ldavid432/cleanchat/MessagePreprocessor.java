@@ -0,0 +1,123 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatBlock;
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.data.PreprocessedMessage;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.github.ldavid432.cleanchat.util.TextMeasurementService;
+import java.util.Arrays;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.MessageNode;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.client.eventbus.Subscribe;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Does the per message work that doesn't depend on the chatbox as each message arrives, so rebuilds only have to look it up.
+ * Only accessed from the client thread.
+ */
+@Slf4j
+@Singleton
+public class MessagePreprocessor
+{
+	// Message ids are sequential, so a power of two table indexed by id keeps the most recent messages without collisions
+	private static final int TABLE_SIZE = 4096;
+
+	@Inject
+	private CleanChatChannelsPlugin plugin;
+
+	@Inject
+	private ChannelNameManager channelNameManager;
+
+	@Inject
+	private TextMeasurementService measurementService;
+
+	@Inject
+	private PerformanceMetrics metrics;
+
+	private final PreprocessedMessage[] table = new PreprocessedMessage[TABLE_SIZE];
+
+	// After other plugins have had a chance to edit the message
+	@Subscribe(priority = -10)
+	public void onChatMessage(ChatMessage event)
+	{
+		MessageNode node = event.getMessageNode();
+		if (node == null || plugin.getConfigSnapshot() == null)
+		{
+			return;
+		}
+
+		long start = metrics.start();
+		preprocess(node.getId(), node.getValue(), node.getSender());
+		measurementService.submit(node.getValue());
+		metrics.stop(PerformanceMetrics.Stage.PREPROCESS, start);
+	}
+
+	void preprocess(int id, String message, String sender)
+	{
+		if (message == null)
+		{
+			return;
+		}
+
+		CleanChatConfigSnapshot config = plugin.getConfigSnapshot();
+		Pair<ChatChannel, String> channelMatch = ChatChannel.findChannelMatch(sender, channelNameManager);
+
+		// Mirrors ChatBlocker.shouldBlock
+		boolean alwaysBlocked = config.findBlock(message) != null;
+		boolean clanInstructionSender = ChatBlock.CLAN_INSTRUCTION.appliesTo(config, sender);
+
+		table[id & (TABLE_SIZE - 1)] = new PreprocessedMessage(id, getTag(config), textHash(message, sender), channelMatch, alwaysBlocked,
+			clanInstructionSender, message.isEmpty());
+	}
+
+	/**
+	 * @return the result for this message if it is still valid for this message text and sender, otherwise null
+	 */
+	@Nullable
+	public PreprocessedMessage get(int id, String message, String sender)
+	{
+		PreprocessedMessage preprocessed = get(id);
+		return preprocessed != null && preprocessed.getTextHash() == textHash(message, sender) ? preprocessed : null;
+	}
+
+	/**
+	 * @return the channel the sender of this message matched when it arrived, or null if it didn't or isn't known
+	 */
+	@Nullable
+	public Pair<ChatChannel, String> getChannelMatch(int id)
+	{
+		PreprocessedMessage preprocessed = id != -1 ? get(id) : null;
+		return preprocessed != null ? preprocessed.getChannelMatch() : null;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(table, null);
+	}
+
+	@Nullable
+	private PreprocessedMessage get(int id)
+	{
+		PreprocessedMessage preprocessed = table[id & (TABLE_SIZE - 1)];
+		if (preprocessed == null || preprocessed.getId() != id || preprocessed.getTag() != getTag(plugin.getConfigSnapshot()))
+		{
+			return null;
+		}
+		return preprocessed;
+	}
+
+	private long getTag(CleanChatConfigSnapshot config)
+	{
+		return ((long) config.getEpoch() << 32) | (channelNameManager.getVersion() & 0xFFFFFFFFL);
+	}
+
+	private static int textHash(String message, String sender)
+	{
+		return 31 * message.hashCode() + Objects.hashCode(sender);
+	}
+}
@@ -0,0 +1,254 @@
+package com.github.ldavid432.cleanchat;
+
+import java.util.Arrays;
+import java.util.Objects;
+import lombok.Getter;
+import net.runelite.api.widgets.Widget;
+
+/**
+ * Collects the edits made to the widgets of a message so each widget is written to and revalidated at most once, when {@link #flush()}
+ * is called. Edits that end up back at the widget's current value are dropped.
+ * Reads go through the buffer so they see pending edits. Chat widgets are sized in absolute mode, so a pending width or height is what
+ * {@link Widget#getWidth()} and {@link Widget#getHeight()} would return after revalidating.
+ * Meant to be flushed after each message so it only ever holds a handful of widgets.
+ * Only accessed from the client thread.
+ */
+public class WidgetMutationBuffer
+{
+	private static final int TEXT = 1;
+	private static final int X = 1 << 1;
+	private static final int Y = 1 << 2;
+	private static final int WIDTH = 1 << 3;
+	private static final int HEIGHT = 1 << 4;
+	private static final int HIDDEN = 1 << 5;
+
+	private Widget[] widgets = new Widget[8];
+	// Bitmask of which fields have a pending edit
+	private int[] pending = new int[8];
+	private String[] text = new String[8];
+	private int[] x = new int[8];
+	private int[] y = new int[8];
+	private int[] width = new int[8];
+	private int[] height = new int[8];
+	private boolean[] hidden = new boolean[8];
+	private int size = 0;
+
+	// Since the last resetCounters
+	@Getter
+	private int setterRequests = 0;
+	@Getter
+	private int setterCalls = 0;
+	@Getter
+	private int revalidateRequests = 0;
+	@Getter
+	private int revalidateCalls = 0;
+
+	public String getText(Widget widget)
+	{
+		int i = indexOf(widget, TEXT);
+		return i != -1 ? text[i] : widget.getText();
+	}
+
+	public int getOriginalX(Widget widget)
+	{
+		int i = indexOf(widget, X);
+		return i != -1 ? x[i] : widget.getOriginalX();
+	}
+
+	public int getOriginalY(Widget widget)
+	{
+		int i = indexOf(widget, Y);
+		return i != -1 ? y[i] : widget.getOriginalY();
+	}
+
+	public int getOriginalWidth(Widget widget)
+	{
+		int i = indexOf(widget, WIDTH);
+		return i != -1 ? width[i] : widget.getOriginalWidth();
+	}
+
+	public int getWidth(Widget widget)
+	{
+		int i = indexOf(widget, WIDTH);
+		return i != -1 ? width[i] : widget.getWidth();
+	}
+
+	public int getHeight(Widget widget)
+	{
+		int i = indexOf(widget, HEIGHT);
+		return i != -1 ? height[i] : widget.getHeight();
+	}
+
+	public boolean isHidden(Widget widget)
+	{
+		int i = indexOf(widget, HIDDEN);
+		return i != -1 ? hidden[i] : widget.isHidden();
+	}
+
+	public void setText(Widget widget, String value)
+	{
+		int i = edit(widget, TEXT);
+		text[i] = value;
+	}
+
+	public void setOriginalX(Widget widget, int value)
+	{
+		int i = edit(widget, X);
+		x[i] = value;
+	}
+
+	public void setOriginalY(Widget widget, int value)
+	{
+		int i = edit(widget, Y);
+		y[i] = value;
+	}
+
+	public void setOriginalWidth(Widget widget, int value)
+	{
+		int i = edit(widget, WIDTH);
+		width[i] = value;
+	}
+
+	public void setOriginalHeight(Widget widget, int value)
+	{
+		int i = edit(widget, HEIGHT);
+		height[i] = value;
+	}
+
+	public void setHidden(Widget widget, boolean value)
+	{
+		int i = edit(widget, HIDDEN);
+		hidden[i] = value;
+	}
+
+	/**
+	 * Where a widget would have been revalidated, only counted since the widget is revalidated on flush if anything changed
+	 */
+	public void revalidate(Widget widget)
+	{
+		revalidateRequests++;
+	}
+
+	/**
+	 * Write the pending edits that change something to their widgets and revalidate each changed widget once
+	 */
+	public void flush()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			Widget widget = widgets[i];
+			int changed = 0;
+
+			if ((pending[i] & TEXT) != 0 && !Objects.equals(text[i], widget.getText()))
+			{
+				widget.setText(text[i]);
+				changed++;
+			}
+			if ((pending[i] & X) != 0 && x[i] != widget.getOriginalX())
+			{
+				widget.setOriginalX(x[i]);
+				changed++;
+			}
+			if ((pending[i] & Y) != 0 && y[i] != widget.getOriginalY())
+			{
+				widget.setOriginalY(y[i]);
+				changed++;
+			}
+			if ((pending[i] & WIDTH) != 0 && width[i] != widget.getOriginalWidth())
+			{
+				widget.setOriginalWidth(width[i]);
+				changed++;
+			}
+			if ((pending[i] & HEIGHT) != 0 && height[i] != widget.getOriginalHeight())
+			{
+				widget.setOriginalHeight(height[i]);
+				changed++;
+			}
+			if ((pending[i] & HIDDEN) != 0 && hidden[i] != widget.isHidden())
+			{
+				widget.setHidden(hidden[i]);
+				changed++;
+			}
+
+			if (changed > 0)
+			{
+				widget.revalidate();
+				revalidateCalls++;
+				setterCalls += changed;
+			}
+
+			widgets[i] = null;
+			text[i] = null;
+			pending[i] = 0;
+		}
+		size = 0;
+	}
+
+	public int getSettersAvoided()
+	{
+		return setterRequests - setterCalls;
+	}
+
+	public int getRevalidatesAvoided()
+	{
+		return revalidateRequests - revalidateCalls;
+	}
+
+	public void resetCounters()
+	{
+		setterRequests = 0;
+		setterCalls = 0;
+		revalidateRequests = 0;
+		revalidateCalls = 0;
+	}
+
+	// Index of the widget if it has a pending edit to the given field, otherwise -1
+	private int indexOf(Widget widget, int field)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (widgets[i] == widget)
+			{
+				return (pending[i] & field) != 0 ? i : -1;
+			}
+		}
+		return -1;
+	}
+
+	private int edit(Widget widget, int field)
+	{
+		setterRequests++;
+
+		int i = 0;
+		while (i < size && widgets[i] != widget)
+		{
+			i++;
+		}
+
+		if (i == size)
+		{
+			if (size == widgets.length)
+			{
+				grow();
+			}
+			widgets[i] = widget;
+			size++;
+		}
+
+		pending[i] |= field;
+		return i;
+	}
+
+	private void grow()
+	{
+		int capacity = widgets.length * 2;
+		widgets = Arrays.copyOf(widgets, capacity);
+		pending = Arrays.copyOf(pending, capacity);
+		text = Arrays.copyOf(text, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		width = Arrays.copyOf(width, capacity);
+		height = Arrays.copyOf(height, capacity);
+		hidden = Arrays.copyOf(hidden, capacity);
+	}
+}
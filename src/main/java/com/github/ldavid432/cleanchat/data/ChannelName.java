@@ -0,0 +1,14 @@
+package com.github.ldavid432.cleanchat.data;
+
+import lombok.Value;
+
+/**
+ * A channel name as the game sent it along with the form used for matching, so it is only sanitized once
+ */
+@Value
+public class ChannelName
+{
+	String name;
+	// Tags removed and NBSP replaced with regular spaces
+	String sanitizedName;
+}
@@ -1,9 +1,11 @@
 package com.github.ldavid432.cleanchat.data;
 
 import com.github.ldavid432.cleanchat.CleanChatChannelsConfig;
+import com.github.ldavid432.cleanchat.CleanChatConfigSnapshot;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.CLAN_INSTRUCTION_MESSAGE;
 import java.util.function.Function;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import net.runelite.client.util.Text;
 
 @AllArgsConstructor
@@ -65,11 +67,12 @@ public enum ChatBlock
 		return isEnabled.apply(config);
 	}
 
-	public boolean appliesTo(CleanChatChannelsConfig config, String message)
+	public boolean appliesTo(CleanChatConfigSnapshot config, String message)
 	{
-		return isEnabled(config) && Text.removeTags(message).contains(this.message);
+		return config.isBlockEnabled(this) && Text.removeTags(message).contains(this.message);
 	}
 
 	private final Function<CleanChatChannelsConfig, Boolean> isEnabled;
+	@Getter
 	private final String message;
 }
@@ -2,12 +2,11 @@ package com.github.ldavid432.cleanchat.data;
 
 import com.github.ldavid432.cleanchat.ChannelNameManager;
 import com.github.ldavid432.cleanchat.CleanChatChannelsConfig;
+import com.github.ldavid432.cleanchat.CleanChatConfigSnapshot;
 import static com.github.ldavid432.cleanchat.CleanChatChannelsConfig.DEFAULT_CUSTOM_CHANNEL_NAME;
-import com.github.ldavid432.cleanchat.util.CleanChatUtil;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.CURRENT_CLAN_REPLACER;
-import static com.github.ldavid432.cleanchat.util.CleanChatUtil.sanitizeName;
+import com.github.ldavid432.cleanchat.util.ChannelNameList;
 import java.awt.Color;
-import java.util.List;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -17,7 +16,6 @@ import org.apache.commons.lang3.tuple.Pair;
 @AllArgsConstructor
 public enum ChatChannel
 {
-	// TODO: Cache booleans & indent mode config values
 	CLAN(
 		CleanChatChannelsConfig::removeClanName,
 		ChannelNameManager::getClanNames,
@@ -51,7 +49,7 @@ public enum ChatChannel
 		CleanChatChannelsConfig::groupIronChannelColor
 	);
 
-	public List<String> getNames(ChannelNameManager channelNameManager)
+	public ChannelNameList getNames(ChannelNameManager channelNameManager)
 	{
 		return getNames.apply(channelNameManager);
 	}
@@ -61,11 +59,21 @@ public enum ChatChannel
 		return isEnabled.apply(config);
 	}
 
+	public boolean isChannelNameRemovalEnabled(CleanChatConfigSnapshot config)
+	{
+		return config.isChannelNameRemovalEnabled(this);
+	}
+
 	public boolean isTabBlocked(CleanChatChannelsConfig config, ChatTab tab)
 	{
 		return isTabBlocked.apply(config, tab);
 	}
 
+	public boolean isTabBlocked(CleanChatConfigSnapshot config, ChatTab tab)
+	{
+		return config.isTabBlocked(this, tab);
+	}
+
 	public boolean isShortNameDefault(ChannelNameManager channelNameManager)
 	{
 		// Compares *un-substituted* shortName
@@ -91,13 +99,23 @@ public enum ChatChannel
 		return isRemoveRank.apply(config);
 	}
 
+	public boolean isRemoveRankEnabled(CleanChatConfigSnapshot config)
+	{
+		return config.isRemoveRankEnabled(this);
+	}
+
 	public Color getColor(CleanChatChannelsConfig config)
 	{
 		return getColor.apply(config);
 	}
 
+	public Color getColor(CleanChatConfigSnapshot config)
+	{
+		return config.getColor(this);
+	}
+
 	private final Function<CleanChatChannelsConfig, Boolean> isEnabled;
-	private final Function<ChannelNameManager, List<String>> getNames;
+	private final Function<ChannelNameManager, ChannelNameList> getNames;
 	private final BiFunction<CleanChatChannelsConfig, ChatTab, Boolean> isTabBlocked;
 	private final Function<ChannelNameManager, String> getShortName;
 	private final Function<CleanChatChannelsConfig, Boolean> isRemoveRank;
@@ -105,25 +123,11 @@ public enum ChatChannel
 
 	public static Pair<ChatChannel, String> findChannelMatch(String channel, ChannelNameManager channelNameManager)
 	{
-		for (ChatChannel channelRemoval : ChatChannel.values())
+		if (channel == null)
 		{
-			if (channel == null)
-			{
-				break;
-			}
-			String widgetChannelName = sanitizeName(channel);
-			String matchedChannelName = channelRemoval.getNames(channelNameManager).stream()
-				.map(CleanChatUtil::sanitizeName)
-				.filter(widgetChannelName::contains)
-				.findFirst()
-				.orElse(null);
-
-			if (matchedChannelName != null)
-			{
-				return Pair.of(channelRemoval, matchedChannelName);
-			}
+			return null;
 		}
 
-		return null;
+		return channelNameManager.findChannelMatch(channel);
 	}
 }
@@ -0,0 +1,44 @@
+package com.github.ldavid432.cleanchat.data;
+
+import com.github.ldavid432.cleanchat.CleanChatConfigSnapshot;
+import javax.annotation.Nullable;
+import lombok.Value;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * What could be decided about a message when it arrived, before it was ever drawn
+ */
+@Value
+public class PreprocessedMessage
+{
+	int id;
+	// Config epoch and channel names version it was decided with
+	long tag;
+	// Hash of the message and sender it was decided for
+	int textHash;
+	// Channel whose name matched the sender
+	@Nullable
+	Pair<ChatChannel, String> channelMatch;
+	// Blocked no matter which tab is selected
+	boolean alwaysBlocked;
+	// Sender is the clan instruction, which happens after world hopping
+	boolean clanInstructionSender;
+	boolean emptyMessage;
+
+	/**
+	 * Same result as {@code ChatBlocker.shouldBlock} for the message this was made from
+	 */
+	public boolean isBlocked(CleanChatConfigSnapshot config, ChatTab selectedChatTab)
+	{
+		if (alwaysBlocked)
+		{
+			return true;
+		}
+		// Messages with text are only looked at further if their sender is a channel
+		if (!emptyMessage && channelMatch == null)
+		{
+			return false;
+		}
+		return clanInstructionSender || (!emptyMessage && channelMatch.getLeft().isTabBlocked(config, selectedChatTab));
+	}
+}
@@ -1,13 +1,12 @@
 package com.github.ldavid432.cleanchat.overlay;
 
+import com.github.ldavid432.cleanchat.ChatLayout;
 import com.github.ldavid432.cleanchat.ChatWidgetEditor;
-import com.github.ldavid432.cleanchat.ChatWidgetGroup;
-import com.github.ldavid432.cleanchat.CleanChatChannelsConfig;
+import com.github.ldavid432.cleanchat.CleanChatChannelsPlugin;
 import com.github.ldavid432.cleanchat.data.ChatTab;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.util.ArrayList;
-import java.util.List;
 import javax.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
@@ -31,7 +30,10 @@ public abstract class BaseCleanChatOverlay extends Overlay
 	protected ChatWidgetEditor chatWidgetEditor;
 
 	@Inject
-	protected CleanChatChannelsConfig config;
+	protected CleanChatChannelsPlugin plugin;
+
+	@Inject
+	private PerformanceMetrics metrics;
 
 	abstract boolean isEnabled();
 
@@ -51,62 +53,51 @@ public abstract class BaseCleanChatOverlay extends Overlay
 			return null;
 		}
 
+		long start = metrics.start();
+		renderChats(graphics);
+		metrics.stop(PerformanceMetrics.Stage.OVERLAY_RENDER, start);
+
+		return null;
+	}
+
+	private void renderChats(Graphics2D graphics)
+	{
 		Widget chatbox = client.getWidget(InterfaceID.Chatbox.SCROLLAREA);
 		ChatTab selectedChatTab = ChatTab.of(client.getVarcIntValue(VarClientID.CHAT_VIEW));
 
 		if (chatbox == null || chatbox.isHidden() || selectedChatTab == ChatTab.CLOSED)
 		{
-			return null;
+			return;
 		}
 
-		graphics.setClip(chatbox.getCanvasLocation().getX(), chatbox.getCanvasLocation().getY(), chatbox.getWidth(), chatbox.getHeight());
+		int chatboxX = chatbox.getCanvasLocation().getX();
+		int chatboxY = chatbox.getCanvasLocation().getY();
+		graphics.setClip(chatboxX, chatboxY, chatbox.getWidth(), chatbox.getHeight());
 
-		List<ChatWidgetGroup> allChats = List.copyOf(chatWidgetEditor.getChatWidgetGroups());
-		List<ChatWidgetGroup> visibleChats = new ArrayList<>();
-		ChatWidgetGroup previousGroup = null;
-		boolean foundStart = false;
+		// Rebuilt by checkReplacements on the client thread
+		ChatLayout layout = chatWidgetEditor.getLayout();
 
-		for (ChatWidgetGroup group : allChats)
+		// Fully visible messages, plus the partially visible one on either side
+		int top = chatbox.getScrollY();
+		int firstVisible = layout.firstStartingAtOrBelow(top);
+		int lastVisible = layout.lastEndingAtOrAbove(top + chatbox.getHeight());
+		if (firstVisible > lastVisible)
 		{
-			boolean isVisibleInChat = group.getY() >= chatbox.getCanvasLocation().getY() &&
-				group.getY() + group.getHeight() <= chatbox.getCanvasLocation().getY() + chatbox.getHeight();
-
-			if (isVisibleInChat)
-			{
-				visibleChats.add(group);
-
-				if (!foundStart)
-				{
-					foundStart = true;
-					if (previousGroup != null)
-					{
-						// Element before first fully visible element
-						visibleChats.add(0, previousGroup);
-					}
-				}
-			}
-			else if (foundStart)
-			{
-				// Element after last fully visible element
-				visibleChats.add(group);
-				break;
-			}
-
-			previousGroup = group;
+			return;
 		}
 
-		visibleChats.forEach(group -> {
-			int x = group.getX();
-			int y = group.getY();
-
-			render(graphics, x, y, group);
-		});
-
-		return null;
+		int first = Math.max(firstVisible - 1, 0);
+		int last = Math.min(lastVisible + 1, layout.getSize() - 1);
+		for (int i = first; i <= last; i++)
+		{
+			render(graphics, chatboxX + layout.getX(i), chatboxY - top + layout.getY(i), layout, i);
+		}
 	}
 
 	/**
 	 * Called on each visible chat message
+	 *
+	 * @param index index of the message in the layout
 	 */
-	abstract void render(Graphics2D graphics, int x, int y, ChatWidgetGroup group);
+	abstract void render(Graphics2D graphics, int x, int y, ChatLayout layout, int index);
 }
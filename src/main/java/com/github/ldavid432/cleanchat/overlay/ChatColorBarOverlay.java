@@ -1,6 +1,8 @@
 package com.github.ldavid432.cleanchat.overlay;
 
-import com.github.ldavid432.cleanchat.ChatWidgetGroup;
+import com.github.ldavid432.cleanchat.ChatLayout;
+import com.github.ldavid432.cleanchat.CleanChatConfigSnapshot;
+import com.github.ldavid432.cleanchat.data.ChatChannel;
 import java.awt.Graphics2D;
 import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
@@ -13,25 +15,27 @@ public class ChatColorBarOverlay extends BaseCleanChatOverlay
 {
 
 	@Override
-	void render(Graphics2D graphics, int x, int y, ChatWidgetGroup group)
+	void render(Graphics2D graphics, int x, int y, ChatLayout layout, int index)
 	{
 		Widget chatbox = client.getWidget(InterfaceID.Chatbox.SCROLLAREA);
+		CleanChatConfigSnapshot config = plugin.getConfigSnapshot();
 
 		x = Math.min(
 			Math.max(
-				x + config.colorBarOffset(),
+				x + config.getColorBarOffset(),
 				chatbox != null ? chatbox.getCanvasLocation().getX() : 0
 			),
 			chatbox != null ? chatbox.getCanvasLocation().getX() + chatbox.getWidth() - 1 : 0
 		);
 
-		graphics.setColor(group.getChannelType() != null ? group.getChannelType().getColor(config) : config.noChannelColor());
-		graphics.fillRect(x, y, config.colorBarWidth(), group.getHeight());
+		ChatChannel channelType = layout.getChannelType(index);
+		graphics.setColor(channelType != null ? channelType.getColor(config) : config.getNoChannelColor());
+		graphics.fillRect(x, y, config.getColorBarWidth(), layout.getHeight(index));
 	}
 
 	@Override
 	boolean isEnabled()
 	{
-		return config.isColorBarEnabled();
+		return plugin.getConfigSnapshot().isColorBarEnabled();
 	}
 }
@@ -1,16 +1,19 @@
 package com.github.ldavid432.cleanchat.overlay;
 
-import com.github.ldavid432.cleanchat.ChatWidgetGroup;
-import com.github.ldavid432.cleanchat.CleanChatChannelsPlugin;
+import com.github.ldavid432.cleanchat.ChatLayout;
+import com.github.ldavid432.cleanchat.ChatRefreshScheduler;
 import static com.github.ldavid432.cleanchat.util.CleanChatUtil.getTextLength;
 import com.github.ldavid432.cleanchat.util.FormatterExtractor;
+import com.github.ldavid432.cleanchat.util.TimestampColumns;
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.awt.image.BufferedImage;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.gameval.VarbitID;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.timestamp.TimestampConfig;
@@ -25,7 +28,10 @@ public class ChatTimestampOverlay extends BaseCleanChatOverlay
 	private TimestampConfig timestampConfig;
 
 	@Inject
-	private CleanChatChannelsPlugin plugin;
+	private ChatRefreshScheduler refreshScheduler;
+
+	@Inject
+	private ClientThread clientThread;
 
 	@Override
 	boolean isEnabled()
@@ -34,45 +40,21 @@ public class ChatTimestampOverlay extends BaseCleanChatOverlay
 	}
 
 	@Override
-	void render(Graphics2D graphics, int x, int y, ChatWidgetGroup group)
+	void render(Graphics2D graphics, int x, int y, ChatLayout layout, int index)
 	{
-		FormatterExtractor.ExtractionResult timestamp = group.getTimestamp();
+		char[] timestamp = layout.getTimestamp(index);
+		TimestampColumns columns = plugin.getTimestampColumns();
 
-		if (timestamp == null)
+		if (timestamp == null || columns == null)
 		{
 			return;
 		}
 
-		int timestampY = y + 14;
-
 		graphics.setColor(getTimestampColour());
 
 		graphics.setFont(FontManager.getRunescapeFont());
 
-		AtomicInteger timestampX = new AtomicInteger(x);
-
-		FormatterExtractor.iterateOutputParts(timestamp, new FormatterExtractor.OutputPartConsumer()
-		{
-			@Override
-			public void consumeSegment(FormatterExtractor.FormatSegment segment)
-			{
-				for (int i = 0; i < segment.value.length(); i++)
-				{
-					graphics.drawString(String.valueOf(segment.value.charAt(i)), timestampX.get(), timestampY);
-					// Largest numbers are 6 pixels + 2 character spacing
-					//  Currently does not account for letter size (Monday, January etc.)
-					timestampX.addAndGet(6 + 2);
-
-				}
-			}
-
-			@Override
-			public void consumeText(String text, int startIndex, int endIndex)
-			{
-				graphics.drawString(text, timestampX.get(), timestampY);
-				timestampX.addAndGet(graphics.getFontMetrics().stringWidth(text));
-			}
-		});
+		columns.draw(graphics, timestamp, x, y + 14);
 	}
 
 	@Subscribe
@@ -94,7 +76,7 @@ public class ChatTimestampOverlay extends BaseCleanChatOverlay
 		FormatterExtractor.ExtractionResult newTemplate = FormatterExtractor.createFromFormatString(timestampConfig.timestampFormat());
 
 		plugin.setTimestampTemplateWidth(0);
-		plugin.setTimestampTemplate(newTemplate);
+		plugin.setTimestampColumns(newTemplate != null ? TimestampColumns.of(newTemplate, getFontMetrics()) : null);
 
 		if (newTemplate != null) {
 			FormatterExtractor.iterateOutputParts(newTemplate, new FormatterExtractor.OutputPartConsumer()
@@ -113,7 +95,22 @@ public class ChatTimestampOverlay extends BaseCleanChatOverlay
 			});
 		}
 
-		client.refreshChat();
+		clientThread.invoke(() -> chatWidgetEditor.clearCache());
+		refreshScheduler.requestRefresh();
+	}
+
+	// Same as graphics.getFontMetrics() once the font is set in render, without having to wait for a frame
+	private static FontMetrics getFontMetrics()
+	{
+		Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		try
+		{
+			return graphics.getFontMetrics(FontManager.getRunescapeFont());
+		}
+		finally
+		{
+			graphics.dispose();
+		}
 	}
 
 	private Color getTimestampColour()
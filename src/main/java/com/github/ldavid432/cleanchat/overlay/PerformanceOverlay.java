@@ -0,0 +1,87 @@
+package com.github.ldavid432.cleanchat.overlay;
+
+import com.github.ldavid432.cleanchat.CleanChatChannelsPlugin;
+import com.github.ldavid432.cleanchat.util.LatencyHistogram;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.github.ldavid432.cleanchat.util.TextMeasurementService;
+import com.github.ldavid432.cleanchat.util.TextMetricsCache;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+/**
+ * Debug overlay showing how long each stage of processing the chatbox takes
+ */
+@Singleton
+public class PerformanceOverlay extends OverlayPanel
+{
+	@Inject
+	private CleanChatChannelsPlugin plugin;
+
+	@Inject
+	private PerformanceMetrics metrics;
+
+	@Inject
+	private TextMetricsCache textMetrics;
+
+	@Inject
+	private TextMeasurementService measurementService;
+
+	PerformanceOverlay()
+	{
+		setPosition(OverlayPosition.TOP_LEFT);
+	}
+
+	@Override
+	public Dimension render(Graphics2D graphics)
+	{
+		if (!plugin.getConfigSnapshot().isPerformanceOverlayEnabled())
+		{
+			return null;
+		}
+
+		panelComponent.getChildren().add(TitleComponent.builder().text("Clean Chat").build());
+		panelComponent.getChildren().add(LineComponent.builder().left("Stage").right("p50 / p99 µs").build());
+
+		for (PerformanceMetrics.Stage stage : PerformanceMetrics.Stage.values())
+		{
+			LatencyHistogram histogram = metrics.getHistogram(stage);
+			if (histogram.getCount() == 0)
+			{
+				continue;
+			}
+
+			panelComponent.getChildren().add(LineComponent.builder()
+				.left(stage.getDisplayName())
+				.right(String.format("%.1f / %.1f", histogram.getPercentileNanos(50) / 1000.0, histogram.getPercentileNanos(99) / 1000.0))
+				.build());
+		}
+
+		for (PerformanceMetrics.Counter counter : PerformanceMetrics.Counter.values())
+		{
+			panelComponent.getChildren().add(LineComponent.builder()
+				.left(counter.getDisplayName())
+				.right(String.valueOf(metrics.getCount(counter)))
+				.build());
+		}
+
+		long textLookups = textMetrics.getHits() + textMetrics.getMisses();
+		panelComponent.getChildren().add(LineComponent.builder()
+			.left("Text cache")
+			.right(textLookups > 0 ? String.format("%d%% of %d", 100 * textMetrics.getHits() / textLookups, textLookups) : "-")
+			.build());
+
+		long measureLookups = measurementService.getHits() + measurementService.getFallbacks();
+		panelComponent.getChildren().add(LineComponent.builder()
+			.left("Measured ahead")
+			.right(measureLookups > 0 ? String.format("%d%% of %d", 100 * measurementService.getHits() / measureLookups, measureLookups) : "-")
+			.build());
+
+		return super.render(graphics);
+	}
+}
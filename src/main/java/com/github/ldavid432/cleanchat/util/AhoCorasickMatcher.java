@@ -0,0 +1,172 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton that finds which of a set of patterns are contained in a text in a single pass.
+ * Tags are skipped while scanning so matching behaves like calling {@code Text.removeTags(text).contains(pattern)} for each pattern,
+ * without allocating. Like removeTags, a tag runs from a {@code <} to the next {@code >}, and a {@code <} with no {@code >} after it is
+ * kept as text.
+ */
+public class AhoCorasickMatcher
+{
+	private static final int NO_MATCH = Integer.MAX_VALUE;
+
+	// Outgoing edges of each node, sorted by char
+	private final char[][] edgeChars;
+	private final int[][] edgeTargets;
+	private final int[] fail;
+	// Lowest pattern index that ends at each node, including through its fail links
+	private final int[] output;
+	private final boolean normalizeNbsp;
+
+	/**
+	 * @param patterns      patterns to match, their index is used as their priority (lowest wins)
+	 * @param normalizeNbsp treat NBSP in the text as a regular space, like {@link CleanChatUtil#sanitizeName(String)}
+	 */
+	public AhoCorasickMatcher(List<String> patterns, boolean normalizeNbsp)
+	{
+		this.normalizeNbsp = normalizeNbsp;
+
+		List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+		List<Integer> trieOutput = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		trieOutput.add(NO_MATCH);
+
+		for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++)
+		{
+			String pattern = patterns.get(patternIndex);
+			int node = 0;
+			for (int i = 0; i < pattern.length(); i++)
+			{
+				Integer next = trie.get(node).get(pattern.charAt(i));
+				if (next == null)
+				{
+					next = trie.size();
+					trie.add(new TreeMap<>());
+					trieOutput.add(NO_MATCH);
+					trie.get(node).put(pattern.charAt(i), next);
+				}
+				node = next;
+			}
+			trieOutput.set(node, Math.min(trieOutput.get(node), patternIndex));
+		}
+
+		int nodeCount = trie.size();
+		edgeChars = new char[nodeCount][];
+		edgeTargets = new int[nodeCount][];
+		fail = new int[nodeCount];
+		output = new int[nodeCount];
+
+		for (int node = 0; node < nodeCount; node++)
+		{
+			TreeMap<Character, Integer> edges = trie.get(node);
+			edgeChars[node] = new char[edges.size()];
+			edgeTargets[node] = new int[edges.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> edge : edges.entrySet())
+			{
+				edgeChars[node][i] = edge.getKey();
+				edgeTargets[node][i] = edge.getValue();
+				i++;
+			}
+			output[node] = trieOutput.get(node);
+		}
+
+		// Breadth first so each node's fail link target is complete before the node itself
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : edgeTargets[0])
+		{
+			fail[child] = 0;
+			queue.add(child);
+		}
+		while (!queue.isEmpty())
+		{
+			int node = queue.poll();
+			output[node] = Math.min(output[node], output[fail[node]]);
+
+			for (int i = 0; i < edgeChars[node].length; i++)
+			{
+				char ch = edgeChars[node][i];
+				int child = edgeTargets[node][i];
+
+				int state = fail[node];
+				int next = findEdge(state, ch);
+				while (next == -1 && state != 0)
+				{
+					state = fail[state];
+					next = findEdge(state, ch);
+				}
+				fail[child] = next != -1 ? next : 0;
+
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @return the lowest index of a pattern contained in the text (with tags removed), or -1 if none are
+	 */
+	public int findFirst(String text)
+	{
+		// Empty patterns are contained in everything
+		int best = output[0];
+		int state = 0;
+		boolean noMoreTags = false;
+
+		int i = 0;
+		while (i < text.length() && best != 0)
+		{
+			char ch = text.charAt(i);
+
+			if (ch == '<' && !noMoreTags)
+			{
+				int tagEnd = text.indexOf('>', i + 1);
+				if (tagEnd == -1)
+				{
+					noMoreTags = true;
+				}
+				else
+				{
+					i = tagEnd + 1;
+					continue;
+				}
+			}
+
+			if (normalizeNbsp && ch == '\u00A0')
+			{
+				ch = ' ';
+			}
+
+			int next = findEdge(state, ch);
+			while (next == -1 && state != 0)
+			{
+				state = fail[state];
+				next = findEdge(state, ch);
+			}
+			state = next != -1 ? next : 0;
+
+			best = Math.min(best, output[state]);
+			i++;
+		}
+
+		return best == NO_MATCH ? -1 : best;
+	}
+
+	public boolean matchesAny(String text)
+	{
+		return findFirst(text) != -1;
+	}
+
+	private int findEdge(int node, char ch)
+	{
+		int index = Arrays.binarySearch(edgeChars[node], ch);
+		return index >= 0 ? edgeTargets[node][index] : -1;
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.ldavid432.cleanchat.util;
+
+import com.github.ldavid432.cleanchat.data.ChannelName;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded set of channel names keyed by raw name, ordered from least to most recently seen.
+ * Adding past the limit drops the name that was seen longest ago.
+ */
+public class ChannelNameList
+{
+	private final Map<String, ChannelName> names;
+	// Last name in the map, tracked so touching it again doesn't count as a change
+	private String mostRecent = null;
+
+	public ChannelNameList(int maxSize)
+	{
+		names = new LinkedHashMap<>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ChannelName> eldest)
+			{
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public boolean contains(String name)
+	{
+		// Doesn't count as access so the order is left alone
+		return names.containsKey(name);
+	}
+
+	/**
+	 * Mark the name as recently seen
+	 *
+	 * @return true if that changed the order of the list
+	 */
+	public boolean touch(String name)
+	{
+		if (name.equals(mostRecent) || names.get(name) == null)
+		{
+			return false;
+		}
+		mostRecent = name;
+		return true;
+	}
+
+	public void add(ChannelName name)
+	{
+		names.put(name.getName(), name);
+		mostRecent = name.getName();
+	}
+
+	/**
+	 * @return least recently seen first
+	 */
+	public Collection<ChannelName> getNames()
+	{
+		return Collections.unmodifiableCollection(names.values());
+	}
+
+	public int size()
+	{
+		return names.size();
+	}
+
+	public void clear()
+	{
+		names.clear();
+		mostRecent = null;
+	}
+}
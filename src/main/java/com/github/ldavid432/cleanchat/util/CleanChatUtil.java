@@ -1,9 +1,7 @@
 package com.github.ldavid432.cleanchat.util;
 
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.util.Text;
 
@@ -17,7 +15,6 @@ public class CleanChatUtil
 	public static final int SCRIPT_SCROLLBAR_MIN = 32;
 	public static final int SCRIPT_SCROLLBAR_MAX = 36;
 	public static final int MAX_CHANNEL_LIST_SIZE = 128;
-	private static final Pattern IMG_TAG_REGEXP = Pattern.compile("<img=[^>]*>");
 	public static final String CURRENT_CLAN_REPLACER = "$$";
 
 	public static String sanitizeName(String string)
@@ -38,86 +35,242 @@ public class CleanChatUtil
 		// NBSP
 		Map.entry('\u00A0', 1));
 
+	private static final int UNKNOWN_CHAR_SIZE = 5;
+	private static final int CHAR_SPACING = 2;
+	private static final int CHAT_ICON_WIDTH = 13; // 11 + 2
+
+	// CHAR_SIZE_MAP + CHAR_SPACING indexed by char, 0 for chars we don't know the size of
+	private static final int[] CHAR_WIDTHS = new int[256];
+
+	static
+	{
+		CHAR_SIZE_MAP.forEach((key, size) -> CHAR_WIDTHS[key] = size + CHAR_SPACING);
+	}
+
+	private static int getCharWidth(char ch)
+	{
+		int width = ch < CHAR_WIDTHS.length ? CHAR_WIDTHS[ch] : 0;
+		if (width == 0)
+		{
+			log.debug("Couldn't get length of {}", ch);
+			return UNKNOWN_CHAR_SIZE + CHAR_SPACING;
+		}
+		return width;
+	}
+
 	public static int getTextLength(String text)
 	{
-		return Text.removeFormattingTags(text).replace("<lt>", "<").replace("<gt>", ">")
-			.chars()
-			.mapToObj(ch -> (char) ch)
-			.map(key -> {
-				if (!CHAR_SIZE_MAP.containsKey(key))
+		return getTextLength(text, 0, text.length());
+	}
+
+	/**
+	 * Measures text[start, end) in a single pass without allocating. Gives the same result as stripping the formatting tags,
+	 * decoding {@code <lt>} and {@code <gt>}, summing the size of each char and adding the size of each {@code <img=N>} tag.
+	 */
+	public static int getTextLength(String text, int start, int end)
+	{
+		int width = 0;
+		// Set once there are no more '>' left, any '<' after that is a literal char
+		boolean noMoreTags = false;
+		// How much of "<gt>" we have seen since decoding a <lt>, since the decoded '<' followed by "gt>" decodes again to '>'
+		int decodedGtProgress = 0;
+
+		int i = start;
+		while (i < end)
+		{
+			char ch = text.charAt(i);
+
+			if (ch == '<' && !noMoreTags)
+			{
+				int tagEnd = text.indexOf('>', i + 1);
+				if (tagEnd == -1 || tagEnd >= end)
+				{
+					noMoreTags = true;
+				}
+				else
 				{
-					log.debug("Couldn't get length of {}", key);
+					if (isTag(text, i, tagEnd, "<lt>"))
+					{
+						width += getCharWidth('<');
+						decodedGtProgress = 1;
+					}
+					else if (isTag(text, i, tagEnd, "<gt>"))
+					{
+						width += getCharWidth('>');
+						decodedGtProgress = 0;
+					}
+					else if (containsIcon(text, i, tagEnd))
+					{
+						width += CHAT_ICON_WIDTH;
+					}
+
+					i = tagEnd + 1;
+					continue;
 				}
-				return CHAR_SIZE_MAP.getOrDefault(key, 5) + 2;
-			})
-			.reduce(0, Integer::sum) + getChatIconsWidth(text);
+			}
+
+			width += getCharWidth(ch);
+
+			if (decodedGtProgress == 1 && ch == 'g' || decodedGtProgress == 2 && ch == 't')
+			{
+				decodedGtProgress++;
+			}
+			else if (decodedGtProgress == 3 && ch == '>')
+			{
+				// '<', 'g', 't', '>' were all counted but only a single '>' is shown
+				width -= getCharWidth('<') + getCharWidth('g') + getCharWidth('t');
+				decodedGtProgress = 0;
+			}
+			else
+			{
+				decodedGtProgress = 0;
+			}
+
+			i++;
+		}
+
+		return width;
 	}
 
-	private static int getChatIconsWidth(String text)
+	private static boolean isTag(String text, int tagStart, int tagEnd, String tag)
 	{
-		int imgCount = Math.toIntExact(IMG_TAG_REGEXP.matcher(text).results().count());
-		return imgCount * 13; // 11 + 2
+		return tagEnd - tagStart + 1 == tag.length() && text.startsWith(tag, tagStart);
+	}
+
+	private static boolean containsIcon(String text, int tagStart, int tagEnd)
+	{
+		for (int i = tagStart; i < tagEnd; i++)
+		{
+			if (text.charAt(i) == '<' && text.startsWith("<img=", i))
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 
 	// Mimics 'paraheight' cs2 instruction
 	public static int getTextLineCount(String text, int width, int indentSpaces)
 	{
-		// Positive lookahead ?= makes it so that the delimiter is included in the split strings
-		Iterator<String> iterator = List.of(text.split("(?=(<br>)|([ \u00A0]))")).iterator();
+		return getTextLineBreaks(text, width, indentSpaces, null);
+	}
 
+	/**
+	 * Mimics 'paraheight' cs2 instruction in a single pass over the text, keeping a running width of the current line instead of
+	 * re-measuring it for every chunk.
+	 * Chunks start at each space, NBSP or {@code <br>} (except at the very start of the text).
+	 *
+	 * @param lineStarts if not null, filled with the offset each line after the first starts at (as far as it fits)
+	 * @return the number of lines
+	 */
+	public static int getTextLineBreaks(String text, int width, int indentSpaces, @Nullable int[] lineStarts)
+	{
 		int numLines = 0;
-		StringBuilder currentLine = new StringBuilder();
 
-		while (iterator.hasNext())
-		{
-			String next = iterator.next();
+		int lineStart = 0;
+		int lineWidth = 0;
+		// A '<' without a '>' is measured as text, until a later chunk closes it, then our running width is no longer valid
+		boolean lineHasUnclosedTag = false;
 
-			int currentWidth = getTextLength(currentLine.toString());
+		// Empty text is still a single (empty) chunk
+		int chunkStart = 0;
+		do
+		{
+			int chunkEnd = findChunkEnd(text, chunkStart);
+			int chunkWidth = -1;
 
-			if (currentWidth < width)
+			boolean append;
+			if (lineWidth < width)
 			{
 				// Start of the line
-				if (currentLine.toString().isEmpty())
+				if (chunkStart == 0)
 				{
-					currentLine.append(next);
+					append = true;
 				}
 				// Adding a line break (from game messages) - player messages get escaped as <lt>br<gt>
-				else if (next.startsWith("<br>"))
+				else if (text.startsWith("<br>", chunkStart))
 				{
-					numLines++;
-					currentLine = new StringBuilder(next);
+					append = false;
 				}
-				// Adding the next chunk
-				else if (currentWidth + getTextLength(next) <= width)
+				else
 				{
-					currentLine.append(next);
+					chunkWidth = getTextLength(text, chunkStart, chunkEnd);
+
+					// Adding the next chunk, or adding the next chunk after the initial indent
+					// add 1 to indentSpaces so that we include the next chunk after the indent on the first line
+					append = lineWidth + chunkWidth <= width || (numLines == 0 && chunkStart - lineStart <= indentSpaces + 1);
 				}
-				// Adding the next chunk after the initial indent
-				// `currentWidth + getTextLength(next) > width` is implied
-				// add 1 to indentSpaces so that we include the next chunk after the indent on the first line
-				else if (numLines == 0 && currentLine.length() <= indentSpaces + 1)
+			}
+			// Width immediately too big, go to next line (this is probably a chunk that will get cut off)
+			else
+			{
+				append = false;
+			}
+
+			if (append)
+			{
+				if (lineHasUnclosedTag)
 				{
-					currentLine.append(next);
+					lineWidth = getTextLength(text, lineStart, chunkEnd);
+					lineHasUnclosedTag = hasUnclosedTag(text, lineStart, chunkEnd);
 				}
-				// Width too big, go to next line
 				else
 				{
-					numLines++;
-					currentLine = new StringBuilder(next);
+					lineWidth += chunkWidth != -1 ? chunkWidth : getTextLength(text, chunkStart, chunkEnd);
+					lineHasUnclosedTag = hasUnclosedTag(text, chunkStart, chunkEnd);
 				}
 			}
-			// Width immediately too big, go to next line (this is probably a chunk that will get cut off)
 			else
 			{
+				if (lineStarts != null && numLines < lineStarts.length)
+				{
+					lineStarts[numLines] = chunkStart;
+				}
 				numLines++;
-				currentLine = new StringBuilder(next);
+
+				lineStart = chunkStart;
+				lineWidth = chunkWidth != -1 ? chunkWidth : getTextLength(text, chunkStart, chunkEnd);
+				lineHasUnclosedTag = hasUnclosedTag(text, chunkStart, chunkEnd);
 			}
+
+			chunkStart = chunkEnd;
 		}
+		while (chunkStart < text.length());
 		numLines++;
 
 		return numLines;
 	}
 
+	static int findChunkEnd(String text, int chunkStart)
+	{
+		for (int i = chunkStart + 1; i < text.length(); i++)
+		{
+			char ch = text.charAt(i);
+			if (ch == ' ' || ch == '\u00A0' || (ch == '<' && text.startsWith("<br>", i)))
+			{
+				return i;
+			}
+		}
+		return text.length();
+	}
+
+	static boolean hasUnclosedTag(String text, int start, int end)
+	{
+		for (int i = end - 1; i >= start; i--)
+		{
+			char ch = text.charAt(i);
+			if (ch == '>')
+			{
+				return false;
+			}
+			if (ch == '<')
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public static String wrapWithBrackets(String channelName)
 	{
 		return "[" + channelName + "]";
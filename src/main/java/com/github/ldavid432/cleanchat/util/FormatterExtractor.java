@@ -1,12 +1,11 @@
 package com.github.ldavid432.cleanchat.util;
 
-import static com.github.ldavid432.cleanchat.util.SimpleDateFormatUtil.formatTokenToRegex;
 import static com.github.ldavid432.cleanchat.util.SimpleDateFormatUtil.getExpandedSize;
 import static com.github.ldavid432.cleanchat.util.SimpleDateFormatUtil.isFormatChar;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
@@ -36,6 +35,10 @@ public class FormatterExtractor {
 		String formattedOutput;  // The template output with placeholders
 		List<FormatSegment> segments;
 		String remainingText;
+		// Compiled once from the template, shared with the results extracted from it
+		@EqualsAndHashCode.Exclude
+		@ToString.Exclude
+		TimestampMatcher matcher;
 	}
 
 	/**
@@ -104,7 +107,8 @@ public class FormatterExtractor {
 			}
 		}
 
-		return new ExtractionResult(templateOutput.toString(), segments, "");
+		String template = templateOutput.toString();
+		return new ExtractionResult(template, segments, "", TimestampMatcher.compile(segments, template));
 	}
 
 	/**
@@ -114,18 +118,11 @@ public class FormatterExtractor {
 	 */
 	public static ExtractionResult extractFromText(ExtractionResult template, String text)
 	{
-		// Remove color formatting tags for matching purposes
-		String cleanedText = removeColorTags(text);
+		int matchedLength = template.matcher.match(text);
 
-		String regex = formatToRegexFromSegments(template.segments, template.formattedOutput);
-
-		Pattern pattern = Pattern.compile("^" + regex);
-		Matcher matcher = pattern.matcher(cleanedText);
-
-		if (matcher.find())
+		if (matchedLength != -1)
 		{
-			String formattedOutput = matcher.group(0);
-			int matchedLength = formattedOutput.length();
+			String formattedOutput = TimestampMatcher.getMatchedText(text, matchedLength);
 
 			// Find where the match ends in the original text (accounting for tags)
 			int originalEndPos = findOriginalPosition(text, matchedLength);
@@ -152,7 +149,7 @@ public class FormatterExtractor {
 					seg.startIndex, seg.endIndex, value));
 			}
 
-			return new ExtractionResult(formattedOutput, populatedSegments, remainingText);
+			return new ExtractionResult(formattedOutput, populatedSegments, remainingText, template.matcher);
 		}
 
 		return null;
@@ -195,49 +192,6 @@ public class FormatterExtractor {
 		return originalPos;
 	}
 
-	/**
-	 * Remove color formatting tags like <col=000000>text</col> from the text
-	 */
-	private static String removeColorTags(String text)
-	{
-		// Pattern to match <col=XXXXXX> and </col> tags
-		return text.replaceAll("<col=[0-9a-fA-F]{6,8}>|</col>", "");
-	}
-
-	/**
-	 * Build regex from the segment list and the template (for extracting from actual text)
-	 */
-	private static String formatToRegexFromSegments(List<FormatSegment> segments, String template)
-	{
-		StringBuilder regex = new StringBuilder();
-		int templatePos = 0;
-
-		for (FormatSegment seg : segments)
-		{
-			// Add any literal text before this segment
-			if (templatePos < seg.startIndex)
-			{
-				String literal = template.substring(templatePos, seg.startIndex);
-				regex.append(Pattern.quote(literal));
-			}
-
-			// Add the regex pattern for this segment
-			String regexPart = formatTokenToRegex(seg.tokenChar, seg.tokenCount);
-			regex.append("(").append(regexPart).append(")");
-
-			templatePos = seg.endIndex;
-		}
-
-		// Add any remaining literal text after the last segment
-		if (templatePos < template.length())
-		{
-			String literal = template.substring(templatePos);
-			regex.append(Pattern.quote(literal));
-		}
-
-		return regex.toString();
-	}
-
 	/**
 	 * Callback interface for processing each part of the output
 	 */
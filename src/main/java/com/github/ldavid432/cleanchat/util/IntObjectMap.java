@@ -0,0 +1,177 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import lombok.Getter;
+
+/**
+ * Open addressing map from int to object that doesn't box its keys and keeps its arrays when cleared
+ */
+public class IntObjectMap<V>
+{
+	private static final float MAX_LOAD = 0.5f;
+
+	private int[] keys;
+	private Object[] values;
+	private boolean[] used;
+	private int mask;
+	@Getter
+	private int size = 0;
+
+	public IntObjectMap()
+	{
+		this(256);
+	}
+
+	public IntObjectMap(int capacity)
+	{
+		allocate(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		int slot = mix(key) & mask;
+		while (used[slot])
+		{
+			if (keys[slot] == key)
+			{
+				return (V) values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	public void put(int key, V value)
+	{
+		if (isFull())
+		{
+			resize(keys.length * 2);
+		}
+
+		int slot = mix(key) & mask;
+		while (used[slot])
+		{
+			if (keys[slot] == key)
+			{
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void putAll(IntObjectMap<V> other)
+	{
+		for (int i = 0; i < other.keys.length; i++)
+		{
+			if (other.used[i])
+			{
+				put(other.keys[i], (V) other.values[i]);
+			}
+		}
+	}
+
+	public void removeIf(IntPredicate predicate)
+	{
+		int slot = 0;
+		while (slot < keys.length)
+		{
+			// Removing shifts a later entry back into this slot, so check it again before moving on
+			if (used[slot] && predicate.test(keys[slot]))
+			{
+				remove(slot);
+			}
+			else
+			{
+				slot++;
+			}
+		}
+	}
+
+	/**
+	 * @return if putting a new key would grow the table
+	 */
+	public boolean isFull()
+	{
+		return size + 1 > keys.length * MAX_LOAD;
+	}
+
+	public void clear()
+	{
+		if (size > 0)
+		{
+			Arrays.fill(used, false);
+			Arrays.fill(values, null);
+			size = 0;
+		}
+	}
+
+	// Backward shift deletion so lookups never need tombstones
+	private void remove(int slot)
+	{
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (used[next])
+		{
+			int home = mix(keys[next]) & mask;
+			// Move the entry into the hole unless its home slot lies cyclically in (hole, next]
+			if (((next - home) & mask) >= ((next - hole) & mask))
+			{
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[hole] = false;
+		values[hole] = null;
+		size--;
+	}
+
+	private void resize(int capacity)
+	{
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldUsed[i])
+			{
+				int slot = mix(oldKeys[i]) & mask;
+				while (used[slot])
+				{
+					slot = (slot + 1) & mask;
+				}
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				size++;
+			}
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new Object[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	// Message ids are sequential so spread them across the table
+	private static int mix(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
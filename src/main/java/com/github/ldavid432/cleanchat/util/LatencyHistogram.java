@@ -0,0 +1,88 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Fixed size latency histogram with 4 buckets per power of two, so percentiles are within ~20% without storing samples
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final long[] buckets = new long[64 * SUB_BUCKETS];
+	@Getter
+	private long count = 0;
+	@Getter
+	private long totalNanos = 0;
+	@Getter
+	private long maxNanos = 0;
+
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		buckets[bucketOf(nanos)]++;
+		count++;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+	}
+
+	/**
+	 * @return the upper bound of the bucket containing the given percentile (0-100), or 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(double percentile)
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int bucket = 0; bucket < buckets.length; bucket++)
+		{
+			seen += buckets[bucket];
+			if (seen >= target)
+			{
+				return Math.min(upperBoundOf(bucket), maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	public void reset()
+	{
+		Arrays.fill(buckets, 0);
+		count = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+	}
+
+	// Values below SUB_BUCKETS get their own bucket, above that the top bits after the highest one pick the sub bucket
+	private static int bucketOf(long nanos)
+	{
+		if (nanos < SUB_BUCKETS)
+		{
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+	}
+
+	private static long upperBoundOf(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket & (SUB_BUCKETS - 1);
+		long lowerBound = (SUB_BUCKETS | subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
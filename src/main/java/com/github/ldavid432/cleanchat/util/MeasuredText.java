@@ -0,0 +1,145 @@
+package com.github.ldavid432.cleanchat.util;
+
+import javax.annotation.Nullable;
+import lombok.Getter;
+
+/**
+ * Width of each chunk of a text, so the number of lines it takes up can be worked out for any width and indent without measuring
+ * it again. Gives the same result as {@link CleanChatUtil#getTextLineCount(String, int, int)} on the text with the indent spaces
+ * in front, the way {@code ChatWidgetGroup#applyIndent} adds them.
+ * Immutable, so it can be built on any thread.
+ */
+public class MeasuredText
+{
+	private static final int SPACE_WIDTH = CleanChatUtil.getTextLength(" ");
+
+	@Getter
+	private final String text;
+	@Getter
+	private final int textLength;
+	private final int[] chunkStarts;
+	private final int[] chunkWidths;
+	private final boolean[] chunkLineBreaks;
+
+	private MeasuredText(String text, int textLength, int[] chunkStarts, int[] chunkWidths, boolean[] chunkLineBreaks)
+	{
+		this.text = text;
+		this.textLength = textLength;
+		this.chunkStarts = chunkStarts;
+		this.chunkWidths = chunkWidths;
+		this.chunkLineBreaks = chunkLineBreaks;
+	}
+
+	/**
+	 * @return null if the line count can't be worked out from the chunk widths alone - text starting with a chunk break (which would
+	 * change the chunks once indented) or with a tag left open at the end of a chunk (which changes how the line is measured)
+	 */
+	@Nullable
+	public static MeasuredText of(String text)
+	{
+		if (!text.isEmpty() && (text.charAt(0) == ' ' || text.charAt(0) == '\u00A0' || text.startsWith("<br>")))
+		{
+			return null;
+		}
+
+		int chunkCount = 0;
+		int chunkStart = 0;
+		do
+		{
+			chunkStart = CleanChatUtil.findChunkEnd(text, chunkStart);
+			chunkCount++;
+		}
+		while (chunkStart < text.length());
+
+		int[] chunkStarts = new int[chunkCount];
+		int[] chunkWidths = new int[chunkCount];
+		boolean[] chunkLineBreaks = new boolean[chunkCount];
+		int textLength = 0;
+
+		chunkStart = 0;
+		for (int i = 0; i < chunkCount; i++)
+		{
+			int chunkEnd = CleanChatUtil.findChunkEnd(text, chunkStart);
+			if (CleanChatUtil.hasUnclosedTag(text, chunkStart, chunkEnd))
+			{
+				return null;
+			}
+
+			chunkStarts[i] = chunkStart;
+			chunkWidths[i] = CleanChatUtil.getTextLength(text, chunkStart, chunkEnd);
+			chunkLineBreaks[i] = chunkStart > 0 && text.startsWith("<br>", chunkStart);
+			textLength += chunkWidths[i];
+			chunkStart = chunkEnd;
+		}
+
+		return new MeasuredText(text, textLength, chunkStarts, chunkWidths, chunkLineBreaks);
+	}
+
+	/**
+	 * Same as {@link CleanChatUtil#getTextLineCount(String, int, int)} for the text with indentSpaces spaces in front
+	 */
+	public int getLineCount(int width, int indentSpaces)
+	{
+		// Each indent space is a chunk of its own, except the last which is part of the first chunk of the text
+		int leadingSpaces = Math.max(indentSpaces - 1, 0);
+		int chunkCount = leadingSpaces + chunkStarts.length;
+
+		int numLines = 0;
+		int lineStart = 0;
+		int lineWidth = 0;
+
+		for (int i = 0; i < chunkCount; i++)
+		{
+			int chunkStart;
+			int chunkWidth;
+			boolean lineBreak;
+			if (i < leadingSpaces)
+			{
+				chunkStart = i;
+				chunkWidth = SPACE_WIDTH;
+				lineBreak = false;
+			}
+			else
+			{
+				int chunk = i - leadingSpaces;
+				chunkStart = chunk == 0 ? leadingSpaces : indentSpaces + chunkStarts[chunk];
+				chunkWidth = chunk == 0 && indentSpaces > 0 ? SPACE_WIDTH + chunkWidths[0] : chunkWidths[chunk];
+				lineBreak = chunkLineBreaks[chunk];
+			}
+
+			boolean append;
+			if (lineWidth < width)
+			{
+				if (chunkStart == 0)
+				{
+					append = true;
+				}
+				else if (lineBreak)
+				{
+					append = false;
+				}
+				else
+				{
+					append = lineWidth + chunkWidth <= width || (numLines == 0 && chunkStart - lineStart <= indentSpaces + 1);
+				}
+			}
+			else
+			{
+				append = false;
+			}
+
+			if (append)
+			{
+				lineWidth += chunkWidth;
+			}
+			else
+			{
+				numLines++;
+				lineStart = chunkStart;
+				lineWidth = chunkWidth;
+			}
+		}
+
+		return numLines + 1;
+	}
+}
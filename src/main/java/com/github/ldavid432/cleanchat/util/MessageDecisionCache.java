@@ -0,0 +1,71 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Cache from message id to a boolean decision.
+ * Each entry is tagged with the state it was decided in and a hash of the message so it is only a hit if neither has changed.
+ * Deciding a message again reuses its entry, so only new messages allocate.
+ * Only accessed from the client thread.
+ */
+public class MessageDecisionCache
+{
+	private static final int INITIAL_CAPACITY = 512;
+
+	private IntObjectMap<Decision> decisions = new IntObjectMap<>(INITIAL_CAPACITY);
+
+	/**
+	 * @return 1 if the message was decided as true with the same tag, 0 if false, -1 if it isn't cached
+	 */
+	public int get(int messageId, long tag, int textHash)
+	{
+		Decision decision = decisions.get(messageId);
+		if (decision == null || decision.tag != tag || decision.textHash != textHash)
+		{
+			return -1;
+		}
+		return decision.decision ? 1 : 0;
+	}
+
+	/**
+	 * @param isStale used to drop entries for messages that no longer exist before the table is grown
+	 */
+	public void put(int messageId, long tag, int textHash, boolean value, IntPredicate isStale)
+	{
+		Decision decision = decisions.get(messageId);
+		if (decision == null)
+		{
+			if (decisions.isFull())
+			{
+				decisions.removeIf(isStale);
+			}
+			decision = new Decision();
+			decisions.put(messageId, decision);
+		}
+		decision.tag = tag;
+		decision.textHash = textHash;
+		decision.decision = value;
+	}
+
+	public void removeIf(IntPredicate predicate)
+	{
+		decisions.removeIf(predicate);
+	}
+
+	public int getSize()
+	{
+		return decisions.getSize();
+	}
+
+	public void clear()
+	{
+		decisions = new IntObjectMap<>(INITIAL_CAPACITY);
+	}
+
+	private static class Decision
+	{
+		long tag;
+		int textHash;
+		boolean decision;
+	}
+}
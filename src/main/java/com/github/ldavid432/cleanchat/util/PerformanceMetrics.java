@@ -0,0 +1,130 @@
+package com.github.ldavid432.cleanchat.util;
+
+import javax.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Stage timings and counters for the debug overlay.
+ * Every call is a single branch while disabled so it can stay in the hot paths.
+ * Only accessed from the client thread.
+ */
+@Singleton
+public class PerformanceMetrics
+{
+	@AllArgsConstructor
+	public enum Stage
+	{
+		REBUILD("Rebuild"),
+		CHANNEL_MATCH("Channel match"),
+		INDENT("Indent"),
+		HEIGHT("Height"),
+		PLACEMENT("Placement"),
+		SCROLLBAR("Scrollbar"),
+		BLOCK_DECISION("Block check"),
+		OVERLAY_RENDER("Overlays"),
+		DEFERRED("Deferred batch"),
+		PREPROCESS("Preprocess"),
+		;
+
+		@Getter
+		private final String displayName;
+	}
+
+	@AllArgsConstructor
+	public enum Counter
+	{
+		MESSAGES_PROCESSED("Processed"),
+		MESSAGES_REPLAYED("Replayed"),
+		BLOCK_CACHE_HITS("Block hits"),
+		BLOCK_CACHE_MISSES("Block misses"),
+		REFRESHES("Refreshes"),
+		REFRESHES_COALESCED("Coalesced refreshes"),
+		PASSES_SKIPPED("Skipped passes"),
+		MESSAGES_DEFERRED("Deferred"),
+		PREPROCESSED_HITS("Preprocessed hits"),
+		SETTERS_AVOIDED("Setters avoided"),
+		REVALIDATES_AVOIDED("Revalidates avoided"),
+		;
+
+		@Getter
+		private final String displayName;
+	}
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+	private final long[] counters = new long[Counter.values().length];
+
+	@Getter
+	private boolean enabled = false;
+
+	public PerformanceMetrics()
+	{
+		for (int i = 0; i < histograms.length; i++)
+		{
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Enabling starts over from nothing
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		if (enabled && !this.enabled)
+		{
+			reset();
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return a start time to pass to {@link #stop(Stage, long)}
+	 */
+	public long start()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	public void stop(Stage stage, long start)
+	{
+		if (enabled)
+		{
+			histograms[stage.ordinal()].record(System.nanoTime() - start);
+		}
+	}
+
+	public void increment(Counter counter)
+	{
+		add(counter, 1);
+	}
+
+	public void add(Counter counter, long amount)
+	{
+		if (enabled)
+		{
+			counters[counter.ordinal()] += amount;
+		}
+	}
+
+	public LatencyHistogram getHistogram(Stage stage)
+	{
+		return histograms[stage.ordinal()];
+	}
+
+	public long getCount(Counter counter)
+	{
+		return counters[counter.ordinal()];
+	}
+
+	public void reset()
+	{
+		for (LatencyHistogram histogram : histograms)
+		{
+			histogram.reset();
+		}
+		for (int i = 0; i < counters.length; i++)
+		{
+			counters[i] = 0;
+		}
+	}
+}
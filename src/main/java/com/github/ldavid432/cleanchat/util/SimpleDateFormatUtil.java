@@ -1,5 +1,13 @@
 package com.github.ldavid432.cleanchat.util;
 
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.CharClass.ANY;
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.CharClass.DIGIT;
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.CharClass.LOWER;
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.CharClass.SIGN;
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.CharClass.UPPER;
+import com.github.ldavid432.cleanchat.util.TimestampMatcher.Step;
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.Step.literal;
+import static com.github.ldavid432.cleanchat.util.TimestampMatcher.Step.run;
 import java.text.SimpleDateFormat;
 
 public class SimpleDateFormatUtil
@@ -28,9 +36,9 @@ public class SimpleDateFormatUtil
 	}
 
 	/**
-	 * Convert a single format token to regex
+	 * Convert a single format token to the steps of a {@link TimestampMatcher}, as a list of alternatives
 	 */
-	static String formatTokenToRegex(char token, int count)
+	static Step[][] formatTokenToSteps(char token, int count)
 	{
 		switch (token)
 		{
@@ -38,128 +46,133 @@ public class SimpleDateFormatUtil
 			case 'Y': // Week-based year
 				if (count == 2)
 				{
-					return "\\d{2}";
+					return steps(run(DIGIT, 2));
 				}
 				else
 				{
-					return "\\d{4}";
+					return steps(run(DIGIT, 4));
 				}
 
 			case 'M': // Month
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
 				if (count == 2)
 				{
-					return "\\d{2}";
+					return steps(run(DIGIT, 2));
 				}
 				if (count == 3)
 				{
-					return "[A-Z][a-z]{2}";
+					return steps(run(UPPER, 1), run(LOWER, 2));
 				}
-				return "[A-Z][a-z]+";
+				return steps(run(UPPER, 1), run(LOWER, 1, Integer.MAX_VALUE));
 
 			case 'w': // Week of year
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
-				return "\\d{2}";
+				return steps(run(DIGIT, 2));
 
 			case 'W': // Week of month
-				return "\\d";
+				return steps(run(DIGIT, 1));
 
 			case 'd': // Day of month
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
-				return "\\d{2}";
+				return steps(run(DIGIT, 2));
 
 			case 'D': // Day of year
 				if (count == 1)
 				{
-					return "\\d{1,3}";
+					return steps(run(DIGIT, 1, 3));
 				}
 				if (count == 2)
 				{
-					return "\\d{1,3}";
+					return steps(run(DIGIT, 1, 3));
 				}
-				return "\\d{3}";
+				return steps(run(DIGIT, 3));
 
 			case 'F': // Day of week in month
-				return "\\d";
+				return steps(run(DIGIT, 1));
 
 			case 'E': // Day name
 				if (count < 4)
 				{
-					return "[A-Z][a-z]{2}";
+					return steps(run(UPPER, 1), run(LOWER, 2));
 				}
-				return "[A-Z][a-z]+";
+				return steps(run(UPPER, 1), run(LOWER, 1, Integer.MAX_VALUE));
 
 			case 'u': // Day of week (1-7, Monday = 1)
-				return "\\d";
+				return steps(run(DIGIT, 1));
 
 			case 'a': // AM/PM
-				return "AM|PM";
+				return new Step[][]{{literal("AM")}, {literal("PM")}};
 
 			case 'H': // Hour (0-23)
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
-				return "\\d{2}";
+				return steps(run(DIGIT, 2));
 
 			case 'h': // Hour (1-12)
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
-				return "\\d{2}";
+				return steps(run(DIGIT, 2));
 
 			case 'K': // Hour (0-11)
 			case 'k': // Hour (1-24)
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
-				return "\\d{2}";
+				return steps(run(DIGIT, 2));
 
 			case 'm': // Minute
 			case 's': // Second
 				if (count == 1)
 				{
-					return "\\d{1,2}";
+					return steps(run(DIGIT, 1, 2));
 				}
-				return "\\d{2}";
-
+				return steps(run(DIGIT, 2));
 
 			case 'S': // Millisecond/Nanosecond
-				return "\\d{" + count + "}";
+				return steps(run(DIGIT, count));
 
 			case 'z': // Time zone abbreviation
-				return "[A-Z]{3,4}";
+				return steps(run(UPPER, 3, 4));
 
 			case 'Z': // Time zone offset
-				return "[+-]\\d{4}";
+				return steps(run(SIGN, 1), run(DIGIT, 4));
 
 			case 'X': // ISO time zone (±HH:mm, ±HHMM, or Z)
 				if (count == 1)
 				{
-					return "[+-]\\d{2}|Z";
+					return new Step[][]{{run(SIGN, 1), run(DIGIT, 2)}, {literal("Z")}};
 				}
 				if (count == 2)
 				{
-					return "[+-]\\d{2}:\\d{2}|Z";
+					return new Step[][]{{run(SIGN, 1), run(DIGIT, 2), literal(":"), run(DIGIT, 2)}, {literal("Z")}};
 				}
-				return "[+-]\\d{2}:\\d{2}:\\d{2}|Z";
+				return new Step[][]{{run(SIGN, 1), run(DIGIT, 2), literal(":"), run(DIGIT, 2), literal(":"), run(DIGIT, 2)}, {literal("Z")}};
 
 			default:
-				return ".{1," + count + "}";
+				return steps(run(ANY, 1, count));
 		}
 	}
 
+	// A single alternative
+	private static Step[][] steps(Step... steps)
+	{
+		return new Step[][]{steps};
+	}
+
 	/**
 	 * Get the maximum expanded size for a format token
 	 */
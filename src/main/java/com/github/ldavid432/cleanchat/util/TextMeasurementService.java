@@ -0,0 +1,141 @@
+package com.github.ldavid432.cleanchat.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measures message texts on background threads as they arrive, so the client thread only has to look up the result when the
+ * chatbox is rebuilt. Lookups are only done from the client thread, which measures the text itself on a miss.
+ */
+@Slf4j
+@Singleton
+public class TextMeasurementService
+{
+	@VisibleForTesting
+	static final int MAX_ENTRIES = 4096;
+	// Marks a text that was measured but can't be looked up, see MeasuredText.of
+	private static final MeasuredText UNMEASURABLE = MeasuredText.of("");
+
+	// Least recently looked up first, written from the measuring threads
+	private final Map<String, MeasuredText> results = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MeasuredText> eldest)
+		{
+			return size() > MAX_ENTRIES;
+		}
+	});
+	private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+	@Nullable
+	private Executor executor;
+	// Our own threads, if we started them
+	@Nullable
+	private ExecutorService threads;
+
+	@Getter
+	private long hits = 0;
+	@Getter
+	private long fallbacks = 0;
+
+	public void startUp()
+	{
+		if (executor == null)
+		{
+			int threadCount = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+			threads = Executors.newFixedThreadPool(threadCount, runnable ->
+			{
+				Thread thread = new Thread(runnable, "clean-chat-measure");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor = threads;
+		}
+	}
+
+	/**
+	 * Measure on the given executor instead of our own threads
+	 */
+	@VisibleForTesting
+	public void startUp(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	public void shutDown()
+	{
+		if (threads != null)
+		{
+			threads.shutdownNow();
+			threads = null;
+		}
+		executor = null;
+		clear();
+	}
+
+	/**
+	 * Measure the text in the background if it hasn't been already
+	 */
+	public void submit(String text)
+	{
+		Executor executor = this.executor;
+		if (executor == null || results.containsKey(text) || pending.putIfAbsent(text, Boolean.TRUE) != null)
+		{
+			return;
+		}
+
+		try
+		{
+			executor.execute(() ->
+			{
+				MeasuredText measured = MeasuredText.of(text);
+				results.put(text, measured != null ? measured : UNMEASURABLE);
+				pending.remove(text);
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			log.debug("Measurement rejected, shutting down", e);
+			pending.remove(text);
+		}
+	}
+
+	/**
+	 * @return the measured text if it has finished and can be used, otherwise null and the caller should measure it itself
+	 */
+	@Nullable
+	public MeasuredText get(String text)
+	{
+		MeasuredText measured = results.get(text);
+		if (measured == null || measured == UNMEASURABLE)
+		{
+			fallbacks++;
+			return null;
+		}
+		hits++;
+		return measured;
+	}
+
+	public int size()
+	{
+		return results.size();
+	}
+
+	public void clear()
+	{
+		results.clear();
+		pending.clear();
+		hits = 0;
+		fallbacks = 0;
+	}
+}
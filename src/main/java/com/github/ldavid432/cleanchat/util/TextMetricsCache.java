@@ -0,0 +1,127 @@
+package com.github.ldavid432.cleanchat.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Getter;
+
+/**
+ * Bounded LRU cache in front of {@link CleanChatUtil#getTextLength(String)} and {@link CleanChatUtil#getTextLineCount(String, int, int)}.
+ * The same channel names, prefixes and messages get measured on every rebuild so most lookups should be hits.
+ * Line counts of message texts measured ahead of time by {@link TextMeasurementService} are used when they're ready.
+ * Only accessed from the client thread.
+ */
+@Singleton
+public class TextMetricsCache
+{
+	@VisibleForTesting
+	static final int MAX_ENTRIES = 2048;
+
+	@Inject
+	private TextMeasurementService measurementService;
+
+	private final Map<String, Metrics> entries = new LinkedHashMap<>(256, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Metrics> eldest)
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	@Getter
+	private long hits = 0;
+	@Getter
+	private long misses = 0;
+
+	public int getTextLength(String text)
+	{
+		Metrics metrics = getMetrics(text);
+		if (metrics.textLength == -1)
+		{
+			misses++;
+			metrics.textLength = CleanChatUtil.getTextLength(text);
+		}
+		else
+		{
+			hits++;
+		}
+		return metrics.textLength;
+	}
+
+	public int getTextLineCount(String text, int width, int indentSpaces)
+	{
+		Metrics metrics = getMetrics(text);
+		// Messages are almost always measured against the same width so we only keep the latest line count for each text
+		if (metrics.lineCount == -1 || metrics.lineWidth != width || metrics.lineIndentSpaces != indentSpaces)
+		{
+			misses++;
+			metrics.lineCount = measureLineCount(text, width, indentSpaces);
+			metrics.lineWidth = width;
+			metrics.lineIndentSpaces = indentSpaces;
+		}
+		else
+		{
+			hits++;
+		}
+		return metrics.lineCount;
+	}
+
+	public int size()
+	{
+		return entries.size();
+	}
+
+	public void clear()
+	{
+		entries.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	private int measureLineCount(String text, int width, int indentSpaces)
+	{
+		// Messages are measured without the indent, which is only known once the chatbox is rebuilt
+		if (hasIndent(text, indentSpaces))
+		{
+			MeasuredText measured = measurementService.get(indentSpaces > 0 ? text.substring(indentSpaces) : text);
+			if (measured != null)
+			{
+				return measured.getLineCount(width, indentSpaces);
+			}
+		}
+		return CleanChatUtil.getTextLineCount(text, width, indentSpaces);
+	}
+
+	private static boolean hasIndent(String text, int indentSpaces)
+	{
+		if (text.length() < indentSpaces)
+		{
+			return false;
+		}
+		for (int i = 0; i < indentSpaces; i++)
+		{
+			if (text.charAt(i) != ' ')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Metrics getMetrics(String text)
+	{
+		return entries.computeIfAbsent(text, t -> new Metrics());
+	}
+
+	private static class Metrics
+	{
+		int textLength = -1;
+
+		int lineCount = -1;
+		int lineWidth;
+		int lineIndentSpaces;
+	}
+}
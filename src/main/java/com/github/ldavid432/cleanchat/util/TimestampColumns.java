@@ -0,0 +1,118 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Where each character of a timestamp template gets drawn, worked out once per template so drawing a timestamp is just a loop
+ * over the precomputed offsets. Each character of a format token gets its own fixed width column, literals are drawn as they are.
+ * Timestamps are stored as char arrays laid out like the template output, see {@link #toChars(FormatterExtractor.ExtractionResult)}.
+ */
+public class TimestampColumns
+{
+	// Largest numbers are 6 pixels + 2 character spacing
+	//  Currently does not account for letter size (Monday, January etc.)
+	private static final int COLUMN_WIDTH = 6 + 2;
+
+	@Getter
+	private final FormatterExtractor.ExtractionResult template;
+	private final char[] templateChars;
+
+	// Each run is drawn in one call, either one column of a format token or a whole literal
+	private final int[] runStarts;
+	private final int[] runLengths;
+	private final int[] runX;
+	private final int runCount;
+
+	private TimestampColumns(FormatterExtractor.ExtractionResult template, int[] runStarts, int[] runLengths, int[] runX, int runCount)
+	{
+		this.template = template;
+		this.templateChars = template.getFormattedOutput().toCharArray();
+		this.runStarts = runStarts;
+		this.runLengths = runLengths;
+		this.runX = runX;
+		this.runCount = runCount;
+	}
+
+	/**
+	 * @param fontMetrics metrics of the font the timestamps are drawn in, for the width of the literals
+	 */
+	public static TimestampColumns of(FormatterExtractor.ExtractionResult template, FontMetrics fontMetrics)
+	{
+		String output = template.getFormattedOutput();
+		// At most one run per character
+		int[] runStarts = new int[output.length()];
+		int[] runLengths = new int[output.length()];
+		int[] runX = new int[output.length()];
+		int runCount = 0;
+
+		int x = 0;
+		int pos = 0;
+		for (FormatterExtractor.FormatSegment segment : template.getSegments())
+		{
+			if (pos < segment.getStartIndex())
+			{
+				runStarts[runCount] = pos;
+				runLengths[runCount] = segment.getStartIndex() - pos;
+				runX[runCount++] = x;
+				x += fontMetrics.stringWidth(output.substring(pos, segment.getStartIndex()));
+			}
+
+			for (int i = segment.getStartIndex(); i < segment.getEndIndex(); i++)
+			{
+				runStarts[runCount] = i;
+				runLengths[runCount] = 1;
+				runX[runCount++] = x;
+				x += COLUMN_WIDTH;
+			}
+			pos = segment.getEndIndex();
+		}
+
+		if (pos < output.length())
+		{
+			runStarts[runCount] = pos;
+			runLengths[runCount] = output.length() - pos;
+			runX[runCount++] = x;
+		}
+
+		return new TimestampColumns(template, runStarts, runLengths, runX, runCount);
+	}
+
+	/**
+	 * @param timestamp extracted from text with this template
+	 * @return the characters to draw, with each token value in its columns (padded with spaces if shorter) and the literals in between
+	 */
+	public char[] toChars(FormatterExtractor.ExtractionResult timestamp)
+	{
+		char[] chars = Arrays.copyOf(templateChars, templateChars.length);
+		for (FormatterExtractor.FormatSegment segment : timestamp.getSegments())
+		{
+			String value = segment.getValue();
+			for (int i = segment.getStartIndex(); i < segment.getEndIndex(); i++)
+			{
+				int valueIndex = i - segment.getStartIndex();
+				chars[i] = valueIndex < value.length() ? value.charAt(valueIndex) : ' ';
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * @param chars from {@link #toChars(FormatterExtractor.ExtractionResult)}, skipped if they were made for a different template
+	 * @param y     baseline to draw at
+	 */
+	public void draw(Graphics2D graphics, char[] chars, int x, int y)
+	{
+		if (chars.length != templateChars.length)
+		{
+			return;
+		}
+
+		for (int i = 0; i < runCount; i++)
+		{
+			graphics.drawChars(chars, runStarts[i], runLengths[i], x + runX[i], y);
+		}
+	}
+}
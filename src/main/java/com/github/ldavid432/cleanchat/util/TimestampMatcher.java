@@ -0,0 +1,241 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A timestamp template compiled into a sequence of steps, matching the same text as the regex built from its tokens would at the
+ * start of the text with color tags removed (including backtracking into earlier runs and alternatives).
+ * Runs directly over the tagged text, skipping {@code <col=...>} and {@code </col>} as it goes, and doesn't allocate.
+ */
+public class TimestampMatcher
+{
+	enum CharClass
+	{
+		DIGIT,
+		UPPER,
+		LOWER,
+		SIGN,
+		// Anything but a line terminator, like '.'
+		ANY;
+
+		boolean matches(char ch)
+		{
+			switch (this)
+			{
+				case DIGIT:
+					return ch >= '0' && ch <= '9';
+				case UPPER:
+					return ch >= 'A' && ch <= 'Z';
+				case LOWER:
+					return ch >= 'a' && ch <= 'z';
+				case SIGN:
+					return ch == '+' || ch == '-';
+				default:
+					return ch != '\n' && ch != '\r' && ch != '\u0085' && ch != '\u2028' && ch != '\u2029';
+			}
+		}
+	}
+
+	/**
+	 * Either a literal or a run of min to max characters of one class
+	 */
+	static class Step
+	{
+		@Nullable
+		final String literal;
+		final CharClass charClass;
+		final int min;
+		final int max;
+
+		private Step(@Nullable String literal, CharClass charClass, int min, int max)
+		{
+			this.literal = literal;
+			this.charClass = charClass;
+			this.min = min;
+			this.max = max;
+		}
+
+		static Step literal(String literal)
+		{
+			return new Step(literal, null, 0, 0);
+		}
+
+		static Step run(CharClass charClass, int min, int max)
+		{
+			return new Step(null, charClass, min, max);
+		}
+
+		static Step run(CharClass charClass, int count)
+		{
+			return run(charClass, count, count);
+		}
+	}
+
+	// Each token is a list of alternatives tried in order, each alternative a sequence of steps
+	private final Step[][][] tokens;
+
+	private TimestampMatcher(Step[][][] tokens)
+	{
+		this.tokens = tokens;
+	}
+
+	public static TimestampMatcher compile(List<FormatterExtractor.FormatSegment> segments, String template)
+	{
+		List<Step[][]> tokens = new ArrayList<>();
+		int templatePos = 0;
+
+		for (FormatterExtractor.FormatSegment segment : segments)
+		{
+			if (templatePos < segment.getStartIndex())
+			{
+				tokens.add(new Step[][]{{Step.literal(template.substring(templatePos, segment.getStartIndex()))}});
+			}
+			tokens.add(SimpleDateFormatUtil.formatTokenToSteps(segment.getTokenChar(), segment.getTokenCount()));
+			templatePos = segment.getEndIndex();
+		}
+
+		if (templatePos < template.length())
+		{
+			tokens.add(new Step[][]{{Step.literal(template.substring(templatePos))}});
+		}
+
+		return new TimestampMatcher(tokens.toArray(new Step[0][][]));
+	}
+
+	/**
+	 * @return the number of characters matched at the start of the text, not counting color tags, or -1 if it doesn't match
+	 */
+	public int match(String text)
+	{
+		return matchToken(text, 0, 0, 0);
+	}
+
+	/**
+	 * @return the first length characters of the text with color tags removed, such as the text matched by {@link #match(String)}
+	 */
+	public static String getMatchedText(String text, int length)
+	{
+		StringBuilder builder = new StringBuilder(length);
+		int pos = 0;
+		for (int i = 0; i < length; i++)
+		{
+			pos = skipColorTags(text, pos);
+			builder.append(text.charAt(pos++));
+		}
+		return builder.toString();
+	}
+
+	private int matchToken(String text, int token, int pos, int length)
+	{
+		if (token == tokens.length)
+		{
+			return length;
+		}
+
+		for (Step[] alternative : tokens[token])
+		{
+			int matched = matchStep(text, token, alternative, 0, pos, length);
+			if (matched != -1)
+			{
+				return matched;
+			}
+		}
+		return -1;
+	}
+
+	private int matchStep(String text, int token, Step[] alternative, int step, int pos, int length)
+	{
+		if (step == alternative.length)
+		{
+			return matchToken(text, token + 1, pos, length);
+		}
+
+		Step current = alternative[step];
+		if (current.literal != null)
+		{
+			for (int i = 0; i < current.literal.length(); i++)
+			{
+				pos = skipColorTags(text, pos);
+				if (pos >= text.length() || text.charAt(pos) != current.literal.charAt(i))
+				{
+					return -1;
+				}
+				pos++;
+			}
+			return matchStep(text, token, alternative, step + 1, pos, length + current.literal.length());
+		}
+
+		// Greedy like the regex, take as many as we can then give them back one at a time
+		int count = 0;
+		int end = pos;
+		while (count < current.max)
+		{
+			int next = skipColorTags(text, end);
+			if (next >= text.length() || !current.charClass.matches(text.charAt(next)))
+			{
+				break;
+			}
+			end = next + 1;
+			count++;
+		}
+
+		for (; count >= current.min; count--)
+		{
+			int matched = matchStep(text, token, alternative, step + 1, advance(text, pos, count), length + count);
+			if (matched != -1)
+			{
+				return matched;
+			}
+		}
+		return -1;
+	}
+
+	// Position just after the next count characters
+	private static int advance(String text, int pos, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			pos = skipColorTags(text, pos) + 1;
+		}
+		return pos;
+	}
+
+	// Same tags as <col=[0-9a-fA-F]{6,8}>|</col>
+	private static int skipColorTags(String text, int pos)
+	{
+		while (pos < text.length() && text.charAt(pos) == '<')
+		{
+			if (text.startsWith("</col>", pos))
+			{
+				pos += 6;
+			}
+			else if (text.startsWith("<col=", pos))
+			{
+				int hexEnd = pos + 5;
+				while (hexEnd < text.length() && hexEnd - pos - 5 < 9 && isHexDigit(text.charAt(hexEnd)))
+				{
+					hexEnd++;
+				}
+
+				int hexDigits = hexEnd - pos - 5;
+				if (hexDigits < 6 || hexDigits > 8 || hexEnd >= text.length() || text.charAt(hexEnd) != '>')
+				{
+					break;
+				}
+				pos = hexEnd + 1;
+			}
+			else
+			{
+				break;
+			}
+		}
+		return pos;
+	}
+
+	private static boolean isHexDigit(char ch)
+	{
+		return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+	}
+}
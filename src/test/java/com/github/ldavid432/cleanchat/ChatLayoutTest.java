@@ -0,0 +1,98 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class ChatLayoutTest
+{
+	private static ChatLayout layout(int... heights)
+	{
+		ChatLayout layout = new ChatLayout();
+		int y = Arrays.stream(heights).sum();
+		// Added bottom to top
+		for (int i = heights.length - 1; i >= 0; i--)
+		{
+			y -= heights[i];
+			layout.add(y, heights[i], 0, 0, null, 0, null);
+		}
+		return layout;
+	}
+
+	@Test
+	public void testVisibleRange()
+	{
+		// Tops: 0, 14, 42, 56, 70
+		ChatLayout layout = layout(14, 28, 14, 14, 14);
+
+		assertEquals(1, layout.firstStartingAtOrBelow(10));
+		assertEquals(1, layout.firstStartingAtOrBelow(14));
+		assertEquals(3, layout.lastEndingAtOrAbove(70));
+		assertEquals(4, layout.lastEndingAtOrAbove(84));
+	}
+
+	@Test
+	public void testOutOfRange()
+	{
+		ChatLayout layout = layout(14, 14);
+
+		assertEquals(2, layout.firstStartingAtOrBelow(100));
+		assertEquals(-1, layout.lastEndingAtOrAbove(10));
+		assertEquals(0, new ChatLayout().firstStartingAtOrBelow(0));
+	}
+
+	@Test
+	public void testGrowsAndClears()
+	{
+		ChatLayout layout = new ChatLayout();
+		for (int i = 999; i >= 0; i--)
+		{
+			layout.add(i * 14, 14, 3, 2, i % 2 == 0 ? ChatChannel.CLAN : null, i * 4, null);
+		}
+
+		assertEquals(1000, layout.getSize());
+		assertEquals(998 * 14, layout.getY(998));
+		assertEquals(ChatChannel.CLAN, layout.getChannelType(998));
+		assertNull(layout.getChannelType(999));
+		assertEquals(999 * 4, layout.getWidgetIndex(999));
+
+		layout.clear();
+		assertEquals(0, layout.getSize());
+	}
+
+	@Test
+	public void testAddAboveAndSet()
+	{
+		// Tops: 0, 14, 42
+		ChatLayout layout = layout(14, 28, 14);
+		layout.add(-14, 14, 0, 0, ChatChannel.CLAN, 12, null);
+
+		assertEquals(4, layout.getSize());
+		assertEquals(-14, layout.getY(0));
+		assertEquals(ChatChannel.CLAN, layout.getChannelType(0));
+		assertEquals(42, layout.getY(3));
+
+		layout.set(2, 20, 22, 0, 0, null, 4, null);
+		assertEquals(20, layout.getY(2));
+		assertEquals(22, layout.getHeight(2));
+		assertEquals(1, layout.lastEndingAtOrAbove(14));
+		assertEquals(3, layout.firstStartingAtOrBelow(21));
+	}
+
+	@Test
+	public void testTruncateKeepsBottom()
+	{
+		// Tops: 0, 14, 42
+		ChatLayout layout = layout(14, 28, 14);
+		layout.truncate(2);
+
+		assertEquals(2, layout.getSize());
+		assertEquals(14, layout.getY(0));
+		assertEquals(42, layout.getY(1));
+
+		layout.truncate(5);
+		assertEquals(2, layout.getSize());
+	}
+}
@@ -0,0 +1,32 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.sim.FakeClient;
+import com.github.ldavid432.cleanchat.sim.FieldInjector;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import net.runelite.api.events.ClientTick;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ChatRefreshSchedulerTest
+{
+	@Test
+	public void testCoalescesRequestsUntilTick()
+	{
+		FakeClient fakeClient = new FakeClient();
+		ChatRefreshScheduler scheduler = FieldInjector.inject(new ChatRefreshScheduler(), fakeClient.getClient(), new PerformanceMetrics());
+
+		for (int i = 0; i < 5; i++)
+		{
+			scheduler.requestRefresh();
+		}
+		assertEquals(0, fakeClient.getRefreshChatCalls());
+
+		scheduler.onClientTick(ClientTick.INSTANCE);
+		assertEquals(1, fakeClient.getRefreshChatCalls());
+		assertEquals(4, scheduler.getCoalescedRequests());
+
+		// Nothing pending
+		scheduler.onClientTick(ClientTick.INSTANCE);
+		assertEquals(1, fakeClient.getRefreshChatCalls());
+	}
+}
@@ -0,0 +1,83 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.sim.FakeWidget;
+import com.github.ldavid432.cleanchat.sim.WidgetCounters;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.CLAN_INSTRUCTION_MESSAGE;
+import net.runelite.api.widgets.Widget;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ChatWidgetLayoutTest
+{
+	// Texts of [0] to [3], with an empty message in front to check the start offset
+	private static ChatWidgetLayout classify(String... texts)
+	{
+		Widget[] widgets = new Widget[8];
+		for (int i = 0; i < widgets.length; i++)
+		{
+			FakeWidget widget = new FakeWidget(0, new WidgetCounters());
+			if (i >= 4)
+			{
+				widget.setText(texts[i - 4]);
+			}
+			widgets[i] = widget.getWidget();
+		}
+		return ChatWidgetLayout.classify(widgets, 4);
+	}
+
+	@Test
+	public void testNormal()
+	{
+		assertEquals(ChatWidgetLayout.NORMAL, classify("Player:", "hello", "[Clan]", ""));
+		assertEquals(ChatWidgetLayout.NORMAL, classify("", "", "[12:00]", ""));
+	}
+
+	@Test
+	public void testFriendsChat()
+	{
+		// Friends game message
+		assertEquals(ChatWidgetLayout.FRIENDS_CHAT, classify("Now talking in: Friends", "", "", ""));
+		// The 'now talking...' message with the clan instruction in [1]
+		assertEquals(ChatWidgetLayout.FRIENDS_CHAT, classify("Now talking in: Friends", "<col=0000ff>" + CLAN_INSTRUCTION_MESSAGE + "</col>", "", ""));
+	}
+
+	@Test
+	public void testConsole()
+	{
+		// Timestamp + message in [0], nothing else
+		assertEquals(ChatWidgetLayout.FRIENDS_CHAT, classify("[12:00] Welcome to Old School RuneScape.", "", "", ""));
+	}
+
+	@Test
+	public void testSpecial()
+	{
+		// Friends chat
+		assertEquals(ChatWidgetLayout.SPECIAL, classify("[Friends] Player:", "hello", "", ""));
+		// GIM broadcast
+		assertEquals(ChatWidgetLayout.SPECIAL, classify("[Group]", "Player received a drop", "", ""));
+		// Clan instruction after world hopping, the message is in [0] and the previous tip in [1]
+		assertEquals(ChatWidgetLayout.SPECIAL, classify(CLAN_INSTRUCTION_MESSAGE, "<col=0000ff>Did you know?</col> You can hop worlds from the logout tab.", "", ""));
+	}
+
+	@Test
+	public void testPostHopBroadcast()
+	{
+		assertEquals(ChatWidgetLayout.POST_HOP_BROADCAST, classify("", "Player received a drop", "", ""));
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		assertEquals(ChatWidgetLayout.EMPTY, classify("", "", "", ""));
+	}
+
+	@Test
+	public void testIgnoresRankSlot()
+	{
+		for (int presence = 0; presence < 8; presence++)
+		{
+			assertEquals(ChatWidgetLayout.of(presence, false), ChatWidgetLayout.of(presence | 0b1000, false));
+			assertEquals(ChatWidgetLayout.of(presence, true), ChatWidgetLayout.of(presence | 0b1000, true));
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.data.IndentMode;
+import com.github.ldavid432.cleanchat.sim.FakeConfig;
+import com.github.ldavid432.cleanchat.sim.FakeWidget;
+import com.github.ldavid432.cleanchat.sim.ReplayReport;
+import com.github.ldavid432.cleanchat.sim.SimulatedMessage;
+import com.github.ldavid432.cleanchat.sim.SyntheticHistory;
+import com.github.ldavid432.cleanchat.sim.WidgetCounters;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.github.ldavid432.cleanchat.util.TextMeasurementService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.runelite.api.events.ClientTick;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatboxSimulatorTest
+{
+	private ChatboxSimulator simulator;
+
+	@Before
+	public void setUp()
+	{
+		simulator = new ChatboxSimulator(FakeConfig.of(CleanChatChannelsConfig.class, Map.of("removeClanName", true)));
+		simulator.addChannelName(ChatChannel.CLAN, SyntheticHistory.CLAN);
+		simulator.addChannelName(ChatChannel.FRIENDS_CHAT, SyntheticHistory.FRIENDS_CHAT);
+		simulator.addChannelName(ChatChannel.GROUP_IRON, SyntheticHistory.GROUP_IRON);
+		simulator.addChannelName(ChatChannel.GUEST_CLAN, SyntheticHistory.GUEST_CLAN);
+	}
+
+	@Test
+	public void testRemovesClanName()
+	{
+		simulator.addMessage(SimulatedMessage.clanChat(SyntheticHistory.CLAN, "Zezima", "Hello", true));
+		simulator.rebuild();
+
+		FakeWidget[] widgets = simulator.getMessageWidgets().get(0);
+		assertFalse(widgets[2].getText().contains(SyntheticHistory.CLAN));
+		assertEquals("Hello", widgets[1].getText());
+		assertEquals(1, simulator.getChatWidgetEditor().getLayout().getSize());
+	}
+
+	@Test
+	public void testChannelMatchSurvivesPreprocessorMiss()
+	{
+		// The friends chat widget holds the player name too, which here contains the clan name
+		simulator.addMessage(SimulatedMessage.friendsChat(SyntheticHistory.FRIENDS_CHAT, SyntheticHistory.CLAN, "Hello", false));
+		simulator.rebuild();
+
+		assertEquals(ChatChannel.FRIENDS_CHAT, simulator.getChatWidgetEditor().getLayout().getChannelType(0));
+		assertTrue(simulator.getMessageWidgets().get(0)[0].getText().contains(SyntheticHistory.CLAN));
+
+		// Matched the same way once what was preprocessed is gone
+		simulator.getMessagePreprocessor().clear();
+		simulator.getChatWidgetEditor().clearCache();
+		simulator.rebuild();
+
+		assertEquals(ChatChannel.FRIENDS_CHAT, simulator.getChatWidgetEditor().getLayout().getChannelType(0));
+		assertTrue(simulator.getMessageWidgets().get(0)[0].getText().contains(SyntheticHistory.CLAN));
+	}
+
+	@Test
+	public void testPreprocessedMatchUsedForNbspName()
+	{
+		simulator.getMetrics().setEnabled(true);
+		simulator.addMessage(SimulatedMessage.clanChat(SyntheticHistory.CLAN.replace(' ', '\u00A0'), "Zezima", "Hello", true));
+		simulator.rebuild();
+
+		assertEquals(ChatChannel.CLAN, simulator.getChatWidgetEditor().getLayout().getChannelType(0));
+		// Once when blocking and once when editing the widgets
+		assertEquals(2, simulator.getMetrics().getCount(PerformanceMetrics.Counter.PREPROCESSED_HITS));
+	}
+
+	@Test
+	public void testRankWidensNameIndent()
+	{
+		ChatboxSimulator simulator = new ChatboxSimulator(FakeConfig.of(CleanChatChannelsConfig.class, Map.of("indentationMode", IndentMode.NAME)));
+		simulator.addChannelName(ChatChannel.CLAN, SyntheticHistory.CLAN);
+		String text = "selling lobsters 200ea anyone want to do raids later gz on the drop what a spoon 99 fishing finally trade me world 330";
+		simulator.addMessage(SimulatedMessage.clanChat(SyntheticHistory.CLAN, "Zezima", text, true));
+		simulator.addMessage(SimulatedMessage.clanChat(SyntheticHistory.CLAN, "Zezima", text, false));
+		simulator.rebuild();
+
+		// Oldest first
+		ChatLayout layout = simulator.getChatWidgetEditor().getLayout();
+		assertTrue(layout.getIndentSpaces(0) > layout.getIndentSpaces(1));
+	}
+
+	@Test
+	public void testRankedFriendsChat()
+	{
+		simulator.addMessage(SimulatedMessage.friendsChat(SyntheticHistory.FRIENDS_CHAT, "Zezima", "Hello", true));
+		simulator.rebuild();
+
+		FakeWidget[] widgets = simulator.getMessageWidgets().get(0);
+		assertEquals(ChatChannel.FRIENDS_CHAT, simulator.getChatWidgetEditor().getLayout().getChannelType(0));
+		assertTrue(widgets[0].getText().contains("Zezima"));
+		assertEquals("Hello", widgets[1].getText());
+		// The rank icon moves with the rest of the message
+		assertFalse(widgets[3].isHidden());
+		assertEquals(widgets[1].getOriginalY(), widgets[3].getOriginalY());
+
+		List<String> first = describeWidgets();
+		simulator.rebuild();
+		assertEquals(first, describeWidgets());
+	}
+
+	@Test
+	public void testScrollingOnlyMovesChildrenVertically()
+	{
+		simulator.addMessages(SyntheticHistory.generate(50, 1));
+		simulator.rebuild();
+
+		FakeWidget name = simulator.getMessageWidgets().get(0)[0];
+		FakeWidget chatbox = simulator.getChatbox();
+		assertTrue(chatbox.getScrollY() > 0);
+		assertEquals(chatbox.getCanvasX() + name.getOriginalX(), name.getWidget().getCanvasLocation().getX());
+		assertEquals(chatbox.getCanvasY() + name.getOriginalY() - chatbox.getScrollY(), name.getWidget().getCanvasLocation().getY());
+	}
+
+	@Test
+	public void testBlocksWelcomeMessage()
+	{
+		simulator.addMessage(SimulatedMessage.gameMessage("Welcome to Old School RuneScape."));
+		simulator.addMessage(SimulatedMessage.publicChat("Zezima", "Hello"));
+		simulator.rebuild();
+
+		assertEquals(1, simulator.getMessageWidgets().size());
+	}
+
+	@Test
+	public void testReplaySyntheticHistory()
+	{
+		List<SimulatedMessage> history = SyntheticHistory.generate(300, 0);
+		simulator.addMessages(history);
+
+		ReplayReport report = simulator.replay(5);
+
+		assertEquals(5, report.getRebuilds());
+		assertEquals(300, report.getMessages());
+		assertTrue(report.getRevalidateCalls() > 0);
+		// Every rebuild lays out the same messages
+		assertEquals(simulator.getMessageWidgets().size(), simulator.getChatWidgetEditor().getLayout().getSize());
+	}
+
+	@Test
+	public void testUnchangedRebuildSkipsProcessing()
+	{
+		simulator.addMessages(SyntheticHistory.generate(50, 1));
+		simulator.getMetrics().setEnabled(true);
+
+		simulator.rebuild();
+		List<String> first = describeWidgets();
+		simulator.rebuild();
+
+		assertEquals(1, simulator.getMetrics().getCount(PerformanceMetrics.Counter.PASSES_SKIPPED));
+		assertEquals(first, describeWidgets());
+
+		// A new message has to go through the full pass
+		simulator.addMessage(SimulatedMessage.publicChat("Zezima", "Hello"));
+		simulator.rebuild();
+		assertEquals(1, simulator.getMetrics().getCount(PerformanceMetrics.Counter.PASSES_SKIPPED));
+	}
+
+	@Test
+	public void testEditedMessageIsNotReplayed()
+	{
+		simulator.addMessages(SyntheticHistory.generate(50, 1));
+		// "Aa" and "BB" have the same hash code
+		int id = simulator.addMessage(SimulatedMessage.publicChat("Zezima", "Aa"));
+		simulator.getMetrics().setEnabled(true);
+		simulator.rebuild();
+
+		simulator.editMessage(id, "BB");
+		simulator.rebuild();
+
+		assertEquals(0, simulator.getMetrics().getCount(PerformanceMetrics.Counter.PASSES_SKIPPED));
+		assertEquals("BB", simulator.getMessageWidgets().get(0)[1].getText());
+	}
+
+	@Test
+	public void testMeasuredTextsAreLookedUp()
+	{
+		// Measured as each message arrives instead of on another thread
+		simulator.getMeasurementService().startUp(Runnable::run);
+		simulator.addMessages(SyntheticHistory.generate(100, 4));
+		simulator.rebuild();
+
+		// Messages are submitted as they arrive but looked up by what ends up in their widgets, indented or not
+		TextMeasurementService measurementService = simulator.getMeasurementService();
+		assertTrue(measurementService.getHits() > 0);
+		assertEquals(0, measurementService.getFallbacks());
+	}
+
+	@Test
+	public void testBufferedEditsSkipRedundantWidgetCalls()
+	{
+		simulator.addMessages(SyntheticHistory.generate(50, 1));
+		simulator.getMetrics().setEnabled(true);
+
+		simulator.rebuild();
+
+		// Messages are edited in several steps but each widget is only revalidated once
+		assertTrue(simulator.getMetrics().getCount(PerformanceMetrics.Counter.REVALIDATES_AVOIDED) > 0);
+		assertTrue(simulator.getMetrics().getCount(PerformanceMetrics.Counter.SETTERS_AVOIDED) > 0);
+	}
+
+	@Test
+	public void testViewportFirstFinishesOnLaterTicks()
+	{
+		ChatboxSimulator viewportFirst = viewportFirstSimulator();
+
+		simulator.addMessages(SyntheticHistory.generate(300, 2));
+		viewportFirst.addMessages(SyntheticHistory.generate(300, 2));
+		simulator.rebuild();
+		viewportFirst.rebuild();
+
+		int shown = viewportFirst.getMessageWidgets().size();
+		long deferred = viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_DEFERRED);
+		assertTrue(deferred > 0);
+		assertEquals(shown - deferred, viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_PROCESSED));
+
+		for (int i = 0; i < deferred; i++)
+		{
+			viewportFirst.getChatWidgetEditor().onClientTick(ClientTick.INSTANCE);
+		}
+
+		assertEquals(shown, viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_PROCESSED));
+		assertEquals(describeWidgets(simulator), describeWidgets(viewportFirst));
+	}
+
+	@Test
+	public void testViewportFirstReplaysFinishedMessages()
+	{
+		ChatboxSimulator viewportFirst = viewportFirstSimulator();
+		viewportFirst.addMessages(SyntheticHistory.generate(300, 2));
+		viewportFirst.rebuild();
+		viewportFirst.finishDeferred();
+		int shown = describeWidgets(viewportFirst).size();
+		long processed = viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_PROCESSED);
+		long replayed = viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_REPLAYED);
+
+		// Only the new message needs the full pass, everything else was already processed and is replayed
+		viewportFirst.addMessage(SimulatedMessage.publicChat("Zezima", "Hello"));
+		viewportFirst.rebuild();
+		viewportFirst.finishDeferred();
+
+		assertEquals(processed + 1, viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_PROCESSED));
+		assertEquals(replayed + processed, viewportFirst.getMetrics().getCount(PerformanceMetrics.Counter.MESSAGES_REPLAYED));
+		assertEquals(shown + 4, describeWidgets(viewportFirst).size());
+	}
+
+	@Test
+	public void testViewportFirstFirstFrameStaysFlat()
+	{
+		long[] widgetCalls = new long[3];
+		for (int i = 0; i < widgetCalls.length; i++)
+		{
+			ChatboxSimulator viewportFirst = viewportFirstSimulator();
+			viewportFirst.addMessages(SyntheticHistory.generate(200 << i, 3));
+			// The same messages around the view every time
+			for (int j = 0; j < 30; j++)
+			{
+				viewportFirst.addMessage(SimulatedMessage.publicChat("Zezima", "Hello " + j));
+			}
+			viewportFirst.rebuild();
+			viewportFirst.finishDeferred();
+
+			viewportFirst.addMessage(SimulatedMessage.publicChat("Zezima", "Hello"));
+			viewportFirst.getCounters().reset();
+			viewportFirst.rebuild();
+
+			WidgetCounters counters = viewportFirst.getCounters();
+			widgetCalls[i] = counters.getGetterCalls() + counters.getSetterCalls() + counters.getRevalidateCalls();
+			assertTrue(viewportFirst.getChatWidgetEditor().hasDeferredWork());
+		}
+
+		// Only the messages around the view are looked at no matter how long the history is
+		assertEquals(widgetCalls[0], widgetCalls[1]);
+		assertEquals(widgetCalls[0], widgetCalls[2]);
+	}
+
+	@Test
+	public void testViewportFirstTicksOnlyMoveWhatChanged()
+	{
+		long[] tickSetters = new long[2];
+		for (int i = 0; i < tickSetters.length; i++)
+		{
+			ChatboxSimulator viewportFirst = viewportFirstSimulator();
+			viewportFirst.addMessages(SyntheticHistory.generate(200 << i, 3));
+			viewportFirst.rebuild();
+
+			viewportFirst.getCounters().reset();
+			int ticks = viewportFirst.finishDeferred();
+			tickSetters[i] = viewportFirst.getCounters().getSetterCalls() / ticks;
+		}
+
+		// Each tick places its own batch, so the work per tick doesn't grow with the history
+		assertTrue(tickSetters[1] < tickSetters[0] * 3 / 2);
+	}
+
+	@Test
+	public void testViewportFirstLayoutOnlyHoldsCurrentMessages()
+	{
+		ChatboxSimulator viewportFirst = viewportFirstSimulator();
+		viewportFirst.addMessages(SyntheticHistory.generate(300, 2));
+		viewportFirst.rebuild();
+		viewportFirst.finishDeferred();
+
+		// Fewer messages than the previous pass laid out
+		viewportFirst.trimHistory(150);
+		viewportFirst.rebuild();
+		assertTrue(viewportFirst.getChatWidgetEditor().hasDeferredWork());
+
+		do
+		{
+			ChatLayout layout = viewportFirst.getChatWidgetEditor().getLayout();
+			assertTrue(layout.getSize() <= viewportFirst.getMessageWidgets().size());
+			for (int i = 1; i < layout.getSize(); i++)
+			{
+				assertTrue(layout.getY(i - 1) + layout.getHeight(i - 1) <= layout.getY(i));
+			}
+			viewportFirst.getChatWidgetEditor().onClientTick(ClientTick.INSTANCE);
+		}
+		while (viewportFirst.getChatWidgetEditor().hasDeferredWork());
+
+		assertEquals(viewportFirst.getMessageWidgets().size(), viewportFirst.getChatWidgetEditor().getLayout().getSize());
+	}
+
+	private static ChatboxSimulator viewportFirstSimulator()
+	{
+		ChatboxSimulator simulator = new ChatboxSimulator(FakeConfig.of(CleanChatChannelsConfig.class, Map.of("removeClanName", true, "isViewportFirstEnabled", true)));
+		simulator.addChannelName(ChatChannel.CLAN, SyntheticHistory.CLAN);
+		simulator.addChannelName(ChatChannel.FRIENDS_CHAT, SyntheticHistory.FRIENDS_CHAT);
+		simulator.addChannelName(ChatChannel.GROUP_IRON, SyntheticHistory.GROUP_IRON);
+		simulator.addChannelName(ChatChannel.GUEST_CLAN, SyntheticHistory.GUEST_CLAN);
+		simulator.getMetrics().setEnabled(true);
+		return simulator;
+	}
+
+	private List<String> describeWidgets()
+	{
+		return describeWidgets(simulator);
+	}
+
+	private static List<String> describeWidgets(ChatboxSimulator simulator)
+	{
+		List<String> descriptions = new ArrayList<>();
+		for (FakeWidget[] widgets : simulator.getMessageWidgets())
+		{
+			for (FakeWidget widget : widgets)
+			{
+				descriptions.add(widget.getText() + "@" + widget.getOriginalX() + "," + widget.getOriginalY() + " "
+					+ widget.getOriginalWidth() + "x" + widget.getOriginalHeight() + (widget.isHidden() ? " hidden" : ""));
+			}
+		}
+		return descriptions;
+	}
+}
@@ -0,0 +1,122 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.data.ChatTab;
+import com.github.ldavid432.cleanchat.data.PreprocessedMessage;
+import com.github.ldavid432.cleanchat.sim.FakeConfig;
+import com.github.ldavid432.cleanchat.sim.SimulatedMessage;
+import com.github.ldavid432.cleanchat.sim.SyntheticHistory;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.CLAN_INSTRUCTION_MESSAGE;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessagePreprocessorTest
+{
+	private ChatboxSimulator simulator;
+
+	@Before
+	public void setUp()
+	{
+		simulator = new ChatboxSimulator(FakeConfig.of(CleanChatChannelsConfig.class, Map.of("removeClanName", true, "removeGroupIronFromClan", true)));
+		simulator.addChannelName(ChatChannel.CLAN, SyntheticHistory.CLAN);
+		simulator.addChannelName(ChatChannel.FRIENDS_CHAT, SyntheticHistory.FRIENDS_CHAT);
+		simulator.addChannelName(ChatChannel.GROUP_IRON, SyntheticHistory.GROUP_IRON);
+		simulator.addChannelName(ChatChannel.GUEST_CLAN, SyntheticHistory.GUEST_CLAN);
+	}
+
+	@Test
+	public void testBlockedSameAsChatBlocker()
+	{
+		CleanChatConfigSnapshot config = simulator.getPlugin().getConfigSnapshot();
+		List<SimulatedMessage> messages = new ArrayList<>(SyntheticHistory.generate(300, 5));
+		// The clan instruction as the sender only counts for empty messages or senders that are also a channel
+		messages.add(SimulatedMessage.clanChat(CLAN_INSTRUCTION_MESSAGE, "", "<col=0000ff>Did you know?</col> You can hop worlds from the logout tab.", false));
+		messages.add(SimulatedMessage.clanChat(CLAN_INSTRUCTION_MESSAGE, "", "", false));
+		messages.add(SimulatedMessage.clanChat(SyntheticHistory.CLAN + " " + CLAN_INSTRUCTION_MESSAGE, "", "Did you know?", false));
+		messages.add(SimulatedMessage.clanChat("", "", "", false));
+
+		for (SimulatedMessage message : messages)
+		{
+			int id = simulator.addMessage(message);
+			String sender = sender(message);
+
+			PreprocessedMessage preprocessed = simulator.getMessagePreprocessor().get(id, message.getText(), sender);
+			assertNotNull(preprocessed);
+			for (ChatTab tab : ChatTab.values())
+			{
+				assertEquals(message.getText() + " in " + tab,
+					ChatBlocker.shouldBlock(config, simulator.getChannelNameManager(), tab, message.getText(), sender),
+					preprocessed.isBlocked(config, tab));
+			}
+		}
+	}
+
+	@Test
+	public void testEditedMessageIsNotUsed()
+	{
+		int id = simulator.addMessage(SimulatedMessage.clanChat(SyntheticHistory.CLAN, "Zezima", "Hello", true));
+
+		assertNotNull(simulator.getMessagePreprocessor().get(id, "Hello", SyntheticHistory.CLAN));
+		assertNull(simulator.getMessagePreprocessor().get(id, "Goodbye", SyntheticHistory.CLAN));
+		assertNull(simulator.getMessagePreprocessor().get(id, "Hello", SyntheticHistory.GUEST_CLAN));
+	}
+
+	@Test
+	public void testNameChangeInvalidates()
+	{
+		int id = simulator.addMessage(SimulatedMessage.clanChat("New Clan", "Zezima", "Hello", true));
+		assertNull(simulator.getMessagePreprocessor().getChannelMatch(id));
+
+		simulator.addChannelName(ChatChannel.CLAN, "New Clan");
+
+		assertNull(simulator.getMessagePreprocessor().get(id, "Hello", "New Clan"));
+	}
+
+	@Test
+	public void testChannelMatchSameAsWidgetText()
+	{
+		List<SimulatedMessage> messages = List.of(
+			SimulatedMessage.friendsChat(SyntheticHistory.FRIENDS_CHAT, "Zezima", "Hello", true),
+			SimulatedMessage.clanChat(SyntheticHistory.CLAN, "Zezima", "Hello", true),
+			SimulatedMessage.groupIronChat(SyntheticHistory.GROUP_IRON, "Zezima", "Hello"),
+			SimulatedMessage.guestClanChat(SyntheticHistory.GUEST_CLAN, "Zezima", "Hello")
+		);
+
+		for (SimulatedMessage message : messages)
+		{
+			int id = simulator.addMessage(message);
+
+			// What the channel widget holds before it is edited, friends chat puts the name in the same widget
+			String widgetText = "[" + message.getChannel() + "]";
+			if (message.getChannel().equals(SyntheticHistory.FRIENDS_CHAT))
+			{
+				widgetText += " " + message.getName() + ":";
+			}
+
+			assertEquals(ChatChannel.findChannelMatch(widgetText, simulator.getChannelNameManager()),
+				simulator.getMessagePreprocessor().getChannelMatch(id));
+		}
+	}
+
+	@Test
+	public void testFriendsChatMatchIgnoresName()
+	{
+		// The widget text would match the clan name in the player's name first, the sender only has the friends chat name
+		int id = simulator.addMessage(SimulatedMessage.friendsChat(SyntheticHistory.FRIENDS_CHAT, SyntheticHistory.CLAN, "Hello", false));
+
+		String widgetText = "[" + SyntheticHistory.FRIENDS_CHAT + "] " + SyntheticHistory.CLAN + ":";
+		assertEquals(ChatChannel.CLAN, ChatChannel.findChannelMatch(widgetText, simulator.getChannelNameManager()).getLeft());
+		assertEquals(ChatChannel.FRIENDS_CHAT, simulator.getMessagePreprocessor().getChannelMatch(id).getLeft());
+	}
+
+	private static String sender(SimulatedMessage message)
+	{
+		return message.getChannel() != null ? message.getChannel() : "";
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.List;
+import java.util.Random;
+import net.runelite.client.util.Text;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class AhoCorasickMatcherTest
+{
+	@Test
+	public void testFindFirstReturnsLowestIndex()
+	{
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("Iron Group", "Iron"), false);
+		assertEquals(0, matcher.findFirst("[Iron Group] Zezima: hi"));
+		assertEquals(1, matcher.findFirst("[Iron] Zezima: hi"));
+		assertEquals(-1, matcher.findFirst("[Clan] Zezima: hi"));
+	}
+
+	@Test
+	public void testFindFirstSkipsTags()
+	{
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("My Clan"), false);
+		assertEquals(0, matcher.findFirst("[<col=ff0000>My</col> <img=1>Clan]"));
+		assertEquals(-1, matcher.findFirst("[My<br>Clan]"));
+	}
+
+	@Test
+	public void testFindFirstUnclosedTag()
+	{
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("My Clan"), false);
+		// No '>' after the '<', so it isn't a tag
+		assertEquals(0, matcher.findFirst("[<3 My Clan]"));
+		// Everything up to the next '>' is a tag, even another '<'
+		assertEquals(-1, matcher.findFirst("[<3 My Clan <col=ff0000>]"));
+		assertEquals(0, matcher.findFirst("[<<col=ff0000>My Clan]"));
+	}
+
+	@Test
+	public void testFindFirstMatchesRemoveTags()
+	{
+		String[] parts = {"<", ">", "<col=ff0000>", "</col>", "<br>", "<3", "My", " ", "Clan", "Iron", "a", "b"};
+		List<String> patterns = List.of("My Clan", "Iron", "a>b", "Clan a");
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns, false);
+
+		Random random = new Random(3);
+		for (int i = 0; i < 5000; i++)
+		{
+			StringBuilder builder = new StringBuilder();
+			int count = random.nextInt(10);
+			for (int j = 0; j < count; j++)
+			{
+				builder.append(parts[random.nextInt(parts.length)]);
+			}
+			String text = builder.toString();
+
+			String withoutTags = Text.removeTags(text);
+			int expected = -1;
+			for (int p = patterns.size() - 1; p >= 0; p--)
+			{
+				if (withoutTags.contains(patterns.get(p)))
+				{
+					expected = p;
+				}
+			}
+			assertEquals(text, expected, matcher.findFirst(text));
+		}
+	}
+
+	@Test
+	public void testFindFirstOverlappingPatterns()
+	{
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("abcd", "bc"), false);
+		assertEquals(1, matcher.findFirst("xabcx"));
+		assertEquals(0, matcher.findFirst("xabcdx"));
+	}
+
+	@Test
+	public void testFindFirstNormalizesNbsp()
+	{
+		assertEquals(0, new AhoCorasickMatcher(List.of("My Clan"), true).findFirst("[My\u00A0Clan]"));
+		assertEquals(-1, new AhoCorasickMatcher(List.of("My Clan"), false).findFirst("[My\u00A0Clan]"));
+	}
+
+	@Test
+	public void testFindFirstNoPatterns()
+	{
+		assertEquals(-1, new AhoCorasickMatcher(List.of(), true).findFirst("anything"));
+	}
+}
@@ -0,0 +1,49 @@
+package com.github.ldavid432.cleanchat.util;
+
+import com.github.ldavid432.cleanchat.data.ChannelName;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ChannelNameListTest
+{
+	private static List<String> names(ChannelNameList list)
+	{
+		return list.getNames().stream().map(ChannelName::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testDropsLeastRecentlySeen()
+	{
+		ChannelNameList list = new ChannelNameList(3);
+		list.add(new ChannelName("A", "A"));
+		list.add(new ChannelName("B", "B"));
+		list.add(new ChannelName("C", "C"));
+
+		assertTrue(list.touch("A"));
+		list.add(new ChannelName("D", "D"));
+
+		assertEquals(List.of("C", "A", "D"), names(list));
+		assertFalse(list.contains("B"));
+	}
+
+	@Test
+	public void testTouchReportsOrderChanges()
+	{
+		ChannelNameList list = new ChannelNameList(3);
+		list.add(new ChannelName("A", "A"));
+		list.add(new ChannelName("B", "B"));
+
+		// Already the most recent
+		assertFalse(list.touch("B"));
+		assertFalse(list.touch("C"));
+		assertEquals(List.of("A", "B"), names(list));
+
+		assertTrue(list.touch("A"));
+		assertFalse(list.touch("A"));
+		assertEquals(List.of("B", "A"), names(list));
+	}
+}
@@ -0,0 +1,108 @@
+package com.github.ldavid432.cleanchat.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class CleanChatUtilTest
+{
+	// ============================================================================
+	// getTextLength Tests
+	// ============================================================================
+
+	@Test
+	public void testGetTextLengthEmpty()
+	{
+		assertEquals(0, CleanChatUtil.getTextLength(""));
+	}
+
+	@Test
+	public void testGetTextLengthPlainText()
+	{
+		// H=5, e=5, l=1, l=1, o=5 + 2 spacing each
+		assertEquals(27, CleanChatUtil.getTextLength("Hello"));
+	}
+
+	@Test
+	public void testGetTextLengthIgnoresColorTags()
+	{
+		assertEquals(27, CleanChatUtil.getTextLength("<col=ff0000>Hello</col>"));
+	}
+
+	@Test
+	public void testGetTextLengthDecodesEscapedBrackets()
+	{
+		assertEquals(34, CleanChatUtil.getTextLength("a<lt>b<gt>c"));
+	}
+
+	@Test
+	public void testGetTextLengthCountsIcons()
+	{
+		assertEquals(53, CleanChatUtil.getTextLength("<img=2>Zezima"));
+		assertEquals(84, CleanChatUtil.getTextLength("[Clan] <img=41>Name:"));
+	}
+
+	@Test
+	public void testGetTextLengthUnclosedBracket()
+	{
+		assertEquals(27, CleanChatUtil.getTextLength("a < b"));
+	}
+
+	@Test
+	public void testGetTextLengthDecodedBracketFollowedByGt()
+	{
+		// Decoding <lt> first makes "<gt>", which then decodes to a single '>'
+		assertEquals(7, CleanChatUtil.getTextLength("<lt>gt>"));
+	}
+
+	@Test
+	public void testGetTextLengthUnknownChar()
+	{
+		assertEquals(7, CleanChatUtil.getTextLength("¿"));
+	}
+
+	@Test
+	public void testGetTextLengthRange()
+	{
+		String text = "[Clan] <img=41>Name:";
+		assertEquals(CleanChatUtil.getTextLength("<img=41>Name:"), CleanChatUtil.getTextLength(text, 7, text.length()));
+	}
+
+	// ============================================================================
+	// getTextLineCount Tests
+	// ============================================================================
+
+	@Test
+	public void testGetTextLineCountSingleLine()
+	{
+		assertEquals(1, CleanChatUtil.getTextLineCount("Hello world", 200, 0));
+	}
+
+	@Test
+	public void testGetTextLineCountEmpty()
+	{
+		assertEquals(1, CleanChatUtil.getTextLineCount("", 200, 0));
+	}
+
+	@Test
+	public void testGetTextLineCountWraps()
+	{
+		int[] lineStarts = new int[2];
+		assertEquals(3, CleanChatUtil.getTextLineBreaks("The quick brown fox jumps over the lazy dog", 100, 0, lineStarts));
+		assertArrayEquals(new int[]{15, 30}, lineStarts);
+	}
+
+	@Test
+	public void testGetTextLineCountLineBreak()
+	{
+		int[] lineStarts = new int[1];
+		assertEquals(2, CleanChatUtil.getTextLineBreaks("Line one<br>Line two", 400, 0, lineStarts));
+		assertArrayEquals(new int[]{8}, lineStarts);
+	}
+
+	@Test
+	public void testGetTextLineCountIndent()
+	{
+		assertEquals(6, CleanChatUtil.getTextLineCount("    Indented message that is long enough to wrap", 60, 4));
+	}
+}
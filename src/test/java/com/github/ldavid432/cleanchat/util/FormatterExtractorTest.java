@@ -361,6 +361,26 @@ public class FormatterExtractorTest
 		assertEquals("12:34:56", result.getFormattedOutput());
 	}
 
+	@Test
+	public void testExtractInvalidColorTagIsText()
+	{
+		FormatterExtractor.ExtractionResult template = FormatterExtractor.createFromFormatString("HH:mm");
+
+		assertNull(FormatterExtractor.extractFromText(template, "<col=ff00>14:30 text"));
+	}
+
+	@Test
+	public void testExtractBacktracksIntoEarlierRuns()
+	{
+		// H takes both digits at first, then has to give one back for mm
+		FormatterExtractor.ExtractionResult template = FormatterExtractor.createFromFormatString("Hmm");
+		FormatterExtractor.ExtractionResult result = FormatterExtractor.extractFromText(template, "<col=ff0000>9</col>30 text");
+
+		assertNotNull(result);
+		assertEquals("930", result.getFormattedOutput());
+		assertEquals(" text", result.getRemainingText());
+	}
+
 	// ============================================================================
 	// iterateOutputParts Tests
 	// ============================================================================
@@ -0,0 +1,30 @@
+package com.github.ldavid432.cleanchat.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void testPercentilesWithinBucketError()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++)
+		{
+			histogram.record(i * 1000L);
+		}
+
+		long p50 = histogram.getPercentileNanos(50);
+		long p99 = histogram.getPercentileNanos(99);
+		assertTrue(p50 >= 500_000 && p50 < 500_000 * 1.25);
+		assertTrue(p99 >= 990_000 && p99 <= 1_000_000);
+		assertEquals(1000, histogram.getCount());
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		assertEquals(0, new LatencyHistogram().getPercentileNanos(99));
+	}
+}
@@ -0,0 +1,50 @@
+package com.github.ldavid432.cleanchat.util;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class MeasuredTextTest
+{
+	private static final String[] PARTS = {" ", "\u00A0", "<br>", "<col=ff0000>", "</col>", "<img=3>", "<lt>", "<gt>", "a", "hello", "W", "wwwwwwwwwwww", "x y"};
+
+	@Test
+	public void testMatchesLineCount()
+	{
+		Random random = new Random(7);
+		for (int i = 0; i < 5000; i++)
+		{
+			StringBuilder builder = new StringBuilder();
+			int parts = random.nextInt(12);
+			for (int j = 0; j < parts; j++)
+			{
+				builder.append(PARTS[random.nextInt(PARTS.length)]);
+			}
+			String text = builder.toString();
+
+			MeasuredText measured = MeasuredText.of(text);
+			if (measured == null)
+			{
+				continue;
+			}
+
+			assertEquals(CleanChatUtil.getTextLength(text), measured.getTextLength());
+			int width = random.nextInt(300);
+			int indentSpaces = random.nextInt(8);
+			assertEquals(text + " at " + width + " indent " + indentSpaces,
+				CleanChatUtil.getTextLineCount(" ".repeat(indentSpaces) + text, width, indentSpaces),
+				measured.getLineCount(width, indentSpaces));
+		}
+	}
+
+	@Test
+	public void testUnmeasurable()
+	{
+		assertNull(MeasuredText.of(" starts with a space"));
+		assertNull(MeasuredText.of("<br>starts with a break"));
+		assertNull(MeasuredText.of("unclosed <col=ff0000 tag"));
+		assertNotNull(MeasuredText.of(""));
+	}
+}
@@ -0,0 +1,103 @@
+package com.github.ldavid432.cleanchat.util;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class MessageDecisionCacheTest
+{
+	private static final long TAG = 7;
+
+	@Test
+	public void testGetAndPut()
+	{
+		MessageDecisionCache cache = new MessageDecisionCache();
+		cache.put(1, TAG, 11, true, id -> false);
+		cache.put(2, TAG, 22, false, id -> false);
+
+		assertEquals(1, cache.get(1, TAG, 11));
+		assertEquals(0, cache.get(2, TAG, 22));
+		assertEquals(-1, cache.get(3, TAG, 33));
+
+		// Deciding the same message again replaces its entry
+		cache.put(1, TAG, 11, false, id -> false);
+		assertEquals(0, cache.get(1, TAG, 11));
+		assertEquals(2, cache.getSize());
+	}
+
+	@Test
+	public void testTagOrTextMismatch()
+	{
+		MessageDecisionCache cache = new MessageDecisionCache();
+		cache.put(1, TAG, 11, true, id -> false);
+
+		assertEquals(-1, cache.get(1, TAG + 1, 11));
+		assertEquals(-1, cache.get(1, TAG, 12));
+	}
+
+	@Test
+	public void testRemoveIfKeepsOthersReachable()
+	{
+		MessageDecisionCache cache = new MessageDecisionCache();
+		for (int id = 0; id < 200; id++)
+		{
+			cache.put(id, TAG, id, id % 3 == 0, i -> false);
+		}
+
+		// Removing entries shifts later ones in their probe sequence back, they have to still be found
+		cache.removeIf(id -> id % 2 == 1);
+
+		assertEquals(100, cache.getSize());
+		for (int id = 0; id < 200; id++)
+		{
+			int expected = id % 2 == 1 ? -1 : id % 3 == 0 ? 1 : 0;
+			assertEquals(expected, cache.get(id, TAG, id));
+		}
+	}
+
+	@Test
+	public void testGrows()
+	{
+		MessageDecisionCache cache = new MessageDecisionCache();
+		for (int id = 0; id < 5000; id++)
+		{
+			cache.put(id, TAG, id, id % 2 == 0, i -> false);
+		}
+
+		assertEquals(5000, cache.getSize());
+		for (int id = 0; id < 5000; id++)
+		{
+			assertEquals(id % 2 == 0 ? 1 : 0, cache.get(id, TAG, id));
+		}
+	}
+
+	@Test
+	public void testDropsStaleBeforeGrowing()
+	{
+		MessageDecisionCache cache = new MessageDecisionCache();
+		// Fills the table up to its load limit
+		for (int id = 0; id < 256; id++)
+		{
+			cache.put(id, TAG, id, true, i -> false);
+		}
+
+		cache.put(256, TAG, 256, true, id -> id < 200);
+
+		assertEquals(57, cache.getSize());
+		assertEquals(-1, cache.get(0, TAG, 0));
+		for (int id = 200; id <= 256; id++)
+		{
+			assertEquals(1, cache.get(id, TAG, id));
+		}
+	}
+
+	@Test
+	public void testClear()
+	{
+		MessageDecisionCache cache = new MessageDecisionCache();
+		cache.put(1, TAG, 11, true, id -> false);
+		cache.clear();
+
+		assertEquals(0, cache.getSize());
+		assertEquals(-1, cache.get(1, TAG, 11));
+	}
+}
@@ -0,0 +1,40 @@
+package com.github.ldavid432.cleanchat.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class TextMeasurementServiceTest
+{
+	@Test
+	public void testEvictsLeastRecentlyLookedUp()
+	{
+		TextMeasurementService service = new TextMeasurementService();
+		service.startUp(Runnable::run);
+		service.submit("first");
+		service.submit("second");
+		assertNotNull(service.get("first"));
+
+		for (int i = 0; i < TextMeasurementService.MAX_ENTRIES - 1; i++)
+		{
+			service.submit("text " + i);
+		}
+
+		assertEquals(TextMeasurementService.MAX_ENTRIES, service.size());
+		assertNotNull(service.get("first"));
+		assertNull(service.get("second"));
+		assertEquals(2, service.getHits());
+		assertEquals(1, service.getFallbacks());
+	}
+
+	@Test
+	public void testNotStarted()
+	{
+		TextMeasurementService service = new TextMeasurementService();
+		service.submit("text");
+
+		assertNull(service.get("text"));
+		assertEquals(0, service.size());
+	}
+}
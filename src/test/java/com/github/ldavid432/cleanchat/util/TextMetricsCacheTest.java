@@ -0,0 +1,79 @@
+package com.github.ldavid432.cleanchat.util;
+
+import com.github.ldavid432.cleanchat.sim.FieldInjector;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TextMetricsCacheTest
+{
+	private static final String TEXT = "anyone want to do raids later, selling lobsters 200ea trade me";
+
+	private TextMetricsCache cache;
+
+	@Before
+	public void setUp()
+	{
+		cache = FieldInjector.inject(new TextMetricsCache(), new TextMeasurementService());
+	}
+
+	@Test
+	public void testCountsHitsAndMisses()
+	{
+		assertEquals(CleanChatUtil.getTextLength("[Clan]"), cache.getTextLength("[Clan]"));
+		assertEquals(CleanChatUtil.getTextLength("[Clan]"), cache.getTextLength("[Clan]"));
+
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		cache.clear();
+		assertEquals(0, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testKeepsOnlyLatestLineCount()
+	{
+		assertEquals(CleanChatUtil.getTextLineCount(TEXT, 300, 0), cache.getTextLineCount(TEXT, 300, 0));
+		assertEquals(CleanChatUtil.getTextLineCount(TEXT, 300, 0), cache.getTextLineCount(TEXT, 300, 0));
+		assertEquals(1, cache.getMisses());
+
+		// A new width replaces the line count measured for the old one
+		assertEquals(CleanChatUtil.getTextLineCount(TEXT, 100, 0), cache.getTextLineCount(TEXT, 100, 0));
+		assertEquals(2, cache.getMisses());
+		assertEquals(CleanChatUtil.getTextLineCount(TEXT, 300, 0), cache.getTextLineCount(TEXT, 300, 0));
+		assertEquals(3, cache.getMisses());
+
+		// So does a new indent
+		assertEquals(CleanChatUtil.getTextLineCount(TEXT, 300, 2), cache.getTextLineCount(TEXT, 300, 2));
+		assertEquals(4, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		// The text length is kept separately
+		cache.getTextLength(TEXT);
+		assertEquals(5, cache.getMisses());
+		cache.getTextLineCount(TEXT, 300, 2);
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed()
+	{
+		for (int i = 0; i < TextMetricsCache.MAX_ENTRIES; i++)
+		{
+			cache.getTextLength("text " + i);
+		}
+		// Used again so it is no longer the eldest
+		cache.getTextLength("text 0");
+
+		cache.getTextLength("new text");
+		assertEquals(TextMetricsCache.MAX_ENTRIES, cache.size());
+
+		long misses = cache.getMisses();
+		cache.getTextLength("text 0");
+		assertEquals(misses, cache.getMisses());
+		cache.getTextLength("text 1");
+		assertEquals(misses + 1, cache.getMisses());
+	}
+}
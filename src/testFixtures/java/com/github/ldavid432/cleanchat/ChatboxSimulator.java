@@ -0,0 +1,384 @@
+package com.github.ldavid432.cleanchat;
+
+import com.github.ldavid432.cleanchat.data.ChatChannel;
+import com.github.ldavid432.cleanchat.data.ChatTab;
+import com.github.ldavid432.cleanchat.sim.FakeClient;
+import com.github.ldavid432.cleanchat.sim.FakeConfig;
+import com.github.ldavid432.cleanchat.sim.FakeMessageNode;
+import com.github.ldavid432.cleanchat.sim.FakeWidget;
+import com.github.ldavid432.cleanchat.sim.FieldInjector;
+import com.github.ldavid432.cleanchat.sim.ReplayReport;
+import com.github.ldavid432.cleanchat.sim.SimulatedMessage;
+import com.github.ldavid432.cleanchat.sim.WidgetCounters;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.SCRIPT_REBUILD_CHATBOX;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.getTextLength;
+import static com.github.ldavid432.cleanchat.util.CleanChatUtil.getTextLineCount;
+import com.github.ldavid432.cleanchat.util.PerformanceMetrics;
+import com.github.ldavid432.cleanchat.util.TextMeasurementService;
+import com.github.ldavid432.cleanchat.util.TextMetricsCache;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.ClientTick;
+import net.runelite.api.events.ScriptCallbackEvent;
+import net.runelite.api.events.ScriptPostFired;
+import net.runelite.api.events.ScriptPreFired;
+import net.runelite.api.gameval.InterfaceID;
+import net.runelite.api.gameval.VarClientID;
+import net.runelite.api.widgets.Widget;
+
+/**
+ * Headless chatbox that lays out messages the way rebuildchatbox does and runs them through the plugin end to end,
+ * see the layout comment in {@link ChatWidgetEditor}.
+ * Only the plugin's own work is timed, building the widgets is left out.
+ */
+public class ChatboxSimulator
+{
+	// Fixed mode chatbox
+	public static final int CHATBOX_WIDTH = 486;
+	public static final int CHATBOX_HEIGHT = 114;
+	private static final int LINE_HEIGHT = 14;
+	private static final int RANK_WIDTH = 11;
+	private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@Getter
+	private final FakeClient fakeClient = new FakeClient();
+	@Getter
+	private final WidgetCounters counters = new WidgetCounters();
+	// Disabled unless a test turns it on
+	@Getter
+	private final PerformanceMetrics metrics = new PerformanceMetrics();
+	@Getter
+	private final CleanChatChannelsPlugin plugin;
+	@Getter
+	private final ChannelNameManager channelNameManager;
+	@Getter
+	private final ChatWidgetEditor chatWidgetEditor;
+	private final ChatBlocker chatBlocker;
+	@Getter
+	private final MessagePreprocessor messagePreprocessor;
+	// Not started unless a test starts it, so every message is measured on the client thread like a miss
+	@Getter
+	private final TextMeasurementService measurementService = new TextMeasurementService();
+
+	@Getter
+	private final FakeWidget chatbox;
+	private final List<FakeMessageNode> history = new ArrayList<>();
+	private int nextMessageId = 1;
+
+	// Reused so the simulated game doesn't allocate while the plugin is being measured
+	private final ScriptPreFired rebuildPreFired = new ScriptPreFired(SCRIPT_REBUILD_CHATBOX);
+	private final ScriptPostFired rebuildPostFired = new ScriptPostFired(SCRIPT_REBUILD_CHATBOX);
+	private final ScriptCallbackEvent filterCheck = new ScriptCallbackEvent();
+	private final int[] filterInts = new int[3];
+	private final Object[] filterObjects = new Object[1];
+	private final List<FakeMessageNode> shownNodes = new ArrayList<>();
+
+	/**
+	 * Bytes allocated by the plugin in the last rebuild, always 0 if the JVM doesn't track allocations.
+	 * Calls into the fake client go through a proxy which boxes their arguments, so that is counted too
+	 */
+	@Getter
+	private long pluginAllocatedBytes;
+
+	// Widgets of each message shown in the last rebuild, newest first, in [0] to [3] order
+	@Getter
+	private final List<FakeWidget[]> messageWidgets = new ArrayList<>();
+
+	public ChatboxSimulator()
+	{
+		this(FakeConfig.defaults(CleanChatChannelsConfig.class));
+	}
+
+	public ChatboxSimulator(CleanChatChannelsConfig config)
+	{
+		plugin = new CleanChatChannelsPlugin();
+		FieldInjector.set(plugin, "configSnapshot", CleanChatConfigSnapshot.of(config));
+
+		channelNameManager = FieldInjector.inject(new ChannelNameManager(), fakeClient.getClient(), config);
+		TextMetricsCache textMetrics = FieldInjector.inject(new TextMetricsCache(), measurementService);
+		messagePreprocessor = FieldInjector.inject(new MessagePreprocessor(), plugin, channelNameManager, measurementService, metrics);
+		chatWidgetEditor = FieldInjector.inject(new ChatWidgetEditor(), fakeClient.getClient(), plugin, channelNameManager, textMetrics, metrics, messagePreprocessor);
+		chatBlocker = FieldInjector.inject(new ChatBlocker(), fakeClient.getClient(), plugin, channelNameManager, metrics, messagePreprocessor);
+		FieldInjector.inject(plugin, fakeClient.getClient(), config, channelNameManager, chatWidgetEditor, chatBlocker, messagePreprocessor, textMetrics, measurementService, metrics);
+
+		chatbox = new FakeWidget(InterfaceID.Chatbox.SCROLLAREA, counters).layout(0, 0, CHATBOX_WIDTH, CHATBOX_HEIGHT);
+		chatbox.setScrollHeight(CHATBOX_HEIGHT);
+		fakeClient.setWidget(InterfaceID.Chatbox.SCROLLAREA, chatbox.getWidget());
+
+		FakeWidget scrollbar = new FakeWidget(InterfaceID.Chatbox.CHATSCROLLBAR, counters).layout(CHATBOX_WIDTH, 0, 16, CHATBOX_HEIGHT);
+		Widget[] scrollbarChildren = new Widget[4];
+		for (int i = 0; i < scrollbarChildren.length; i++)
+		{
+			scrollbarChildren[i] = scrollbar.child().layout(0, 0, 16, 16).getWidget();
+		}
+		scrollbar.setDynamicChildren(scrollbarChildren);
+		fakeClient.setWidget(InterfaceID.Chatbox.CHATSCROLLBAR, scrollbar.getWidget());
+
+		fakeClient.setVarcInt(VarClientID.CHAT_VIEW, ChatTab.ALL.getValue());
+		filterCheck.setEventName("chatFilterCheck");
+	}
+
+	public void addChannelName(ChatChannel channel, String name)
+	{
+		channelNameManager.addName(channel.getNames(channelNameManager), name);
+	}
+
+	/**
+	 * @return the id of the new message
+	 */
+	public int addMessage(SimulatedMessage message)
+	{
+		// The game uses an empty sender rather than null for messages outside of channels
+		String sender = message.getChannel() != null ? message.getChannel() : "";
+		FakeMessageNode node = new FakeMessageNode(nextMessageId++, message.getType(), message.getName(), sender, message.getText(), message.isRanked());
+		history.add(node);
+		fakeClient.addMessage(node);
+		messagePreprocessor.onChatMessage(new ChatMessage(node.getNode(), node.getType(), node.getName(), node.getValue(), node.getSender(), 0));
+		return node.getId();
+	}
+
+	public void addMessages(List<SimulatedMessage> messages)
+	{
+		messages.forEach(this::addMessage);
+	}
+
+	/**
+	 * Change the text of a message without changing its id, like other plugins do
+	 */
+	public void editMessage(int id, String text)
+	{
+		history.stream().filter(node -> node.getId() == id).forEach(node -> node.setValue(text));
+	}
+
+	/**
+	 * Drop the oldest messages the way the game does once its history is full
+	 */
+	public void trimHistory(int maxMessages)
+	{
+		while (history.size() > maxMessages)
+		{
+			fakeClient.removeMessage(history.remove(0).getId());
+		}
+	}
+
+	/**
+	 * Rebuild the chatbox and run every message through the plugin.
+	 * Bytes the plugin allocated are kept in {@link #getPluginAllocatedBytes()}
+	 *
+	 * @return nanoseconds spent in the plugin
+	 */
+	public long rebuild()
+	{
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		chatWidgetEditor.onScriptPreFired(rebuildPreFired);
+
+		// Newest message first, the game checks them all before laying out the ones that pass
+		shownNodes.clear();
+		for (int i = history.size() - 1; i >= 0; i--)
+		{
+			FakeMessageNode node = history.get(i);
+
+			filterInts[0] = 1;
+			filterInts[1] = node.getType().getType();
+			filterInts[2] = node.getId();
+			filterObjects[0] = node.getValue();
+			fakeClient.setStacks(filterInts, filterObjects);
+
+			// In subscriber priority order
+			chatBlocker.onScriptCallbackEvent(filterCheck);
+			chatWidgetEditor.onScriptCallbackEvent(filterCheck);
+
+			if (fakeClient.getIntStack()[0] != 0)
+			{
+				shownNodes.add(node);
+			}
+		}
+
+		long pluginNanos = System.nanoTime() - start;
+		pluginAllocatedBytes = allocatedBytes() - startBytes;
+
+		messageWidgets.clear();
+		List<Widget> dynamicChildren = new ArrayList<>();
+		List<Widget> staticChildren = new ArrayList<>();
+		List<FakeWidget> clickBoxes = new ArrayList<>();
+		int totalHeight = 0;
+
+		// Newest message at the bottom is laid out first
+		for (FakeMessageNode node : shownNodes)
+		{
+			totalHeight += layoutMessage(node, dynamicChildren, staticChildren, clickBoxes);
+		}
+
+		// Like the game, the oldest message goes at the top unless there are only a few and the chat stays scrolled to the bottom
+		int y = totalHeight >= CHATBOX_HEIGHT ? 0 : CHATBOX_HEIGHT - totalHeight - 2;
+		for (int i = messageWidgets.size() - 1; i >= 0; i--)
+		{
+			for (FakeWidget widget : messageWidgets.get(i))
+			{
+				widget.setOriginalY(y);
+			}
+			clickBoxes.get(i).setOriginalY(y);
+			y += clickBoxes.get(i).getOriginalHeight();
+		}
+		chatbox.setScrollHeight(Math.max(totalHeight >= CHATBOX_HEIGHT ? y + 2 : y, CHATBOX_HEIGHT));
+		chatbox.setScrollY(chatbox.getScrollHeight() - CHATBOX_HEIGHT);
+
+		chatbox.setDynamicChildren(dynamicChildren.toArray(new Widget[0]));
+		chatbox.setStaticChildren(staticChildren.toArray(new Widget[0]));
+
+		startBytes = allocatedBytes();
+		start = System.nanoTime();
+		chatWidgetEditor.onScriptPostFired(rebuildPostFired);
+		pluginNanos += System.nanoTime() - start;
+		pluginAllocatedBytes += allocatedBytes() - startBytes;
+
+		return pluginNanos;
+	}
+
+	/**
+	 * Run client ticks until viewport-first mode has nothing left to process
+	 *
+	 * @return the number of ticks
+	 */
+	public int finishDeferred()
+	{
+		int ticks = 0;
+		while (chatWidgetEditor.hasDeferredWork())
+		{
+			chatWidgetEditor.onClientTick(ClientTick.INSTANCE);
+			ticks++;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Rebuild the chatbox repeatedly without any new messages, like scrolling or switching tabs does
+	 */
+	public ReplayReport replay(int rebuilds)
+	{
+		counters.reset();
+		long[] rebuildNanos = new long[rebuilds];
+		for (int i = 0; i < rebuilds; i++)
+		{
+			rebuildNanos[i] = rebuild();
+		}
+		return new ReplayReport(history.size(), rebuildNanos, counters.getSetterCalls(), counters.getRevalidateCalls());
+	}
+
+	/**
+	 * Add each message in turn and rebuild after each one, like a live chat does
+	 */
+	public ReplayReport replayLive(List<SimulatedMessage> messages)
+	{
+		counters.reset();
+		long[] rebuildNanos = new long[messages.size()];
+		for (int i = 0; i < messages.size(); i++)
+		{
+			addMessage(messages.get(i));
+			rebuildNanos[i] = rebuild();
+		}
+		return new ReplayReport(history.size(), rebuildNanos, counters.getSetterCalls(), counters.getRevalidateCalls());
+	}
+
+	// Mirrors how rebuildchatbox fills the 4 dynamic children of each message, returns the height used. Positioned once every message is laid out
+	private int layoutMessage(FakeMessageNode node, List<Widget> dynamicChildren, List<Widget> staticChildren, List<FakeWidget> clickBoxes)
+	{
+		FakeWidget name = chatbox.child();
+		FakeWidget message = chatbox.child();
+		FakeWidget channel = chatbox.child();
+		FakeWidget rank = chatbox.child();
+		FakeWidget clickBox = chatbox.child();
+
+		rank.setHidden(true);
+		rank.setSpriteId(-1);
+
+		String channelText = !node.getSender().isEmpty() ? "[" + node.getSender() + "]" : "";
+		String nameText = node.getName() + ":";
+		ChatMessageType type = node.getType();
+
+		int messageX;
+		if (type == ChatMessageType.GAMEMESSAGE)
+		{
+			// Game messages only use the first widget
+			name.setText(node.getValue());
+			messageX = 0;
+		}
+		else if (type == ChatMessageType.FRIENDSCHAT)
+		{
+			// Channel and name share the first widget, which spans the whole chatbox
+			String text = channelText + " " + nameText;
+			name.setText(text);
+			name.layout(0, 0, CHATBOX_WIDTH, LINE_HEIGHT);
+			messageX = getTextLength(text) + 3;
+
+			if (node.isRanked())
+			{
+				// Drawn after the channel, with the message moved over to make room for it
+				rank.setHidden(false);
+				rank.setSpriteId(0);
+				rank.layout(getTextLength(channelText) + 1, 0, RANK_WIDTH, LINE_HEIGHT);
+				messageX += RANK_WIDTH;
+			}
+		}
+		else
+		{
+			int x = 0;
+			if (!channelText.isEmpty())
+			{
+				channel.setText(channelText);
+				channel.layout(x, 0, getTextLength(channelText), LINE_HEIGHT);
+				x += channel.getOriginalWidth() + 1;
+			}
+
+			if (node.isRanked())
+			{
+				rank.setHidden(false);
+				rank.setSpriteId(0);
+				rank.layout(x, 0, RANK_WIDTH, LINE_HEIGHT);
+				x += RANK_WIDTH;
+			}
+
+			name.setText(nameText);
+			name.layout(x, 0, getTextLength(nameText), LINE_HEIGHT);
+			messageX = x + name.getOriginalWidth() + 3;
+		}
+
+		if (type != ChatMessageType.GAMEMESSAGE)
+		{
+			message.setText(node.getValue());
+		}
+
+		int messageWidth = CHATBOX_WIDTH - messageX;
+		int height = getTextLineCount(type == ChatMessageType.GAMEMESSAGE ? name.getText() : message.getText(), messageWidth, 0) * LINE_HEIGHT;
+		message.layout(messageX, 0, messageWidth, height);
+		if (type == ChatMessageType.GAMEMESSAGE)
+		{
+			name.layout(0, 0, CHATBOX_WIDTH, height);
+		}
+
+		for (FakeWidget widget : new FakeWidget[]{name, message, channel, rank})
+		{
+			dynamicChildren.add(widget.getWidget());
+		}
+		clickBox.layout(0, 0, CHATBOX_WIDTH, height);
+		clickBox.setHidden(true);
+		staticChildren.add(clickBox.getWidget());
+		clickBoxes.add(clickBox);
+
+		messageWidgets.add(new FakeWidget[]{name, message, channel, rank});
+
+		return height;
+	}
+
+	private static long allocatedBytes()
+	{
+		return THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled()
+			? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+}
@@ -0,0 +1,126 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.IterableHashTable;
+import net.runelite.api.widgets.Widget;
+
+/**
+ * The parts of {@link Client} the chatbox touches, behind a proxy.
+ * Anything not implemented throws so gaps in the simulation are obvious.
+ */
+public class FakeClient implements InvocationHandler
+{
+	@Getter
+	private final Client client;
+
+	private final Map<Integer, Widget> widgets = new HashMap<>();
+	private final Map<Integer, Integer> varcInts = new HashMap<>();
+	private final Map<Integer, FakeMessageNode> messages = new HashMap<>();
+	private final IterableHashTable<?> messageTable;
+
+	@Getter
+	private final int[] intStack = new int[1000];
+	@Getter
+	private final Object[] objectStack = new Object[1000];
+	private int intStackSize = 0;
+	private int objectStackSize = 0;
+
+	@Getter
+	private int refreshChatCalls = 0;
+
+	public FakeClient()
+	{
+		client = (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{Client.class}, this);
+		messageTable = (IterableHashTable<?>) Proxy.newProxyInstance(IterableHashTable.class.getClassLoader(), new Class<?>[]{IterableHashTable.class}, (proxy, method, args) -> {
+			if ("get".equals(method.getName()))
+			{
+				FakeMessageNode node = messages.get((int) (long) args[0]);
+				return node != null ? node.getNode() : null;
+			}
+			throw new UnsupportedOperationException("IterableHashTable." + method.getName() + " is not simulated");
+		});
+	}
+
+	public void setWidget(int componentId, Widget widget)
+	{
+		widgets.put(componentId, widget);
+	}
+
+	public void setVarcInt(int varc, int value)
+	{
+		varcInts.put(varc, value);
+	}
+
+	public void addMessage(FakeMessageNode message)
+	{
+		messages.put(message.getId(), message);
+	}
+
+	public void removeMessage(int id)
+	{
+		messages.remove(id);
+	}
+
+	/**
+	 * Replace the script stacks the way the client does before a script callback
+	 */
+	public void setStacks(int[] ints, Object[] objects)
+	{
+		System.arraycopy(ints, 0, intStack, 0, ints.length);
+		intStackSize = ints.length;
+		System.arraycopy(objects, 0, objectStack, 0, objects.length);
+		objectStackSize = objects.length;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+	{
+		switch (method.getName())
+		{
+			case "getWidget":
+				if (args.length != 1)
+				{
+					break;
+				}
+				return widgets.get((int) args[0]);
+			case "getVarcIntValue":
+				return varcInts.getOrDefault((int) args[0], 0);
+			case "setVarcIntValue":
+				varcInts.put((int) args[0], (int) args[1]);
+				return null;
+			case "getIntStack":
+				return intStack;
+			case "getIntStackSize":
+				return intStackSize;
+			case "getObjectStack":
+				return objectStack;
+			case "getObjectStackSize":
+				return objectStackSize;
+			case "getMessages":
+				return messageTable;
+			case "getGameState":
+				return GameState.LOGGED_IN;
+			case "getFriendsChatManager":
+			case "getClanChannel":
+			case "getGuestClanChannel":
+				return null;
+			case "refreshChat":
+				refreshChatCalls++;
+				return null;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "FakeClient";
+		}
+		throw new UnsupportedOperationException("Client." + method.getName() + " is not simulated");
+	}
+}
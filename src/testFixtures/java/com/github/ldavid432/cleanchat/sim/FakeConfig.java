@@ -0,0 +1,36 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Config proxies that return each item's default value, or an override keyed by method name, so nothing needs a ConfigManager
+ */
+public class FakeConfig
+{
+	public static <T> T defaults(Class<T> type)
+	{
+		return of(type, Map.of());
+	}
+
+	public static <T> T of(Class<T> type, Map<String, Object> overrides)
+	{
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+			if (overrides.containsKey(method.getName()))
+			{
+				return overrides.get(method.getName());
+			}
+
+			if (!method.isDefault())
+			{
+				throw new UnsupportedOperationException(method.getName());
+			}
+
+			return MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+				.unreflectSpecial(method, type)
+				.bindTo(proxy)
+				.invokeWithArguments(args != null ? args : new Object[0]);
+		}));
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.lang.reflect.Proxy;
+import lombok.Getter;
+import lombok.Setter;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.MessageNode;
+
+/**
+ * In-memory message state behind a {@link MessageNode} proxy
+ */
+@Getter
+@Setter
+public class FakeMessageNode
+{
+	private final int id;
+	private final ChatMessageType type;
+	private String name;
+	private String sender;
+	private String value;
+	// Whether the sender has a rank icon in their channel, not part of the real MessageNode
+	private final boolean ranked;
+	private final MessageNode node;
+
+	public FakeMessageNode(int id, ChatMessageType type, String name, String sender, String value, boolean ranked)
+	{
+		this.id = id;
+		this.type = type;
+		this.name = name;
+		this.sender = sender;
+		this.value = value;
+		this.ranked = ranked;
+		this.node = (MessageNode) Proxy.newProxyInstance(MessageNode.class.getClassLoader(), new Class<?>[]{MessageNode.class}, (proxy, method, args) -> {
+			switch (method.getName())
+			{
+				case "getId":
+					return this.id;
+				case "getType":
+					return this.type;
+				case "getName":
+					return this.name;
+				case "getSender":
+					return this.sender;
+				case "getValue":
+					return this.value;
+				case "setValue":
+					this.value = (String) args[0];
+					return null;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				case "toString":
+					return "FakeMessageNode{id=" + this.id + ", value=" + this.value + "}";
+				default:
+					throw new UnsupportedOperationException("MessageNode." + method.getName() + " is not simulated");
+			}
+		});
+	}
+}
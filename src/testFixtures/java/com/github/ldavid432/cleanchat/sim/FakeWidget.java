@@ -0,0 +1,176 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import lombok.Getter;
+import lombok.Setter;
+import net.runelite.api.Point;
+import net.runelite.api.widgets.Widget;
+
+/**
+ * In-memory widget state behind a {@link Widget} proxy.
+ * Sizes are treated as absolute and positions are relative to the parent, which is all the chatbox needs.
+ * Anything not implemented throws so gaps in the simulation are obvious.
+ */
+@Getter
+@Setter
+public class FakeWidget implements InvocationHandler
+{
+	private final int id;
+	private final WidgetCounters counters;
+	private final Widget widget;
+
+	private FakeWidget parent;
+	private Widget[] dynamicChildren = new Widget[0];
+	private Widget[] staticChildren = new Widget[0];
+
+	private String text = "";
+	private String name = "";
+	private int spriteId = -1;
+	private boolean hidden = false;
+	private int originalX = 0;
+	private int originalY = 0;
+	private int originalWidth = 0;
+	private int originalHeight = 0;
+	private int scrollY = 0;
+	private int scrollHeight = 0;
+
+	public FakeWidget(int id, WidgetCounters counters)
+	{
+		this.id = id;
+		this.counters = counters;
+		this.widget = (Widget) Proxy.newProxyInstance(Widget.class.getClassLoader(), new Class<?>[]{Widget.class}, this);
+	}
+
+	public FakeWidget child()
+	{
+		FakeWidget child = new FakeWidget(id, counters);
+		child.parent = this;
+		return child;
+	}
+
+	public FakeWidget layout(int x, int y, int width, int height)
+	{
+		originalX = x;
+		originalY = y;
+		originalWidth = width;
+		originalHeight = height;
+		return this;
+	}
+
+	public int getCanvasX()
+	{
+		return parent != null ? parent.getCanvasX() + originalX : originalX;
+	}
+
+	public int getCanvasY()
+	{
+		return parent != null ? parent.getCanvasY() + originalY - parent.scrollY : originalY;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args)
+	{
+		String methodName = method.getName();
+
+		if (methodName.startsWith("set"))
+		{
+			counters.countSetter();
+		}
+		else if (methodName.startsWith("get") || methodName.startsWith("is"))
+		{
+			counters.countGetter();
+		}
+
+		switch (methodName)
+		{
+			case "getId":
+				return id;
+			case "getText":
+				return text;
+			case "setText":
+				text = (String) args[0];
+				return widget;
+			case "getName":
+				return name;
+			case "getSpriteId":
+				return spriteId;
+			case "isHidden":
+			case "isSelfHidden":
+				return hidden;
+			case "setHidden":
+				hidden = (boolean) args[0];
+				return widget;
+			case "getOriginalX":
+				return originalX;
+			case "setOriginalX":
+				originalX = (int) args[0];
+				return widget;
+			case "getOriginalY":
+				return originalY;
+			case "setOriginalY":
+				originalY = (int) args[0];
+				return widget;
+			case "getOriginalWidth":
+			case "getWidth":
+				return originalWidth;
+			case "setOriginalWidth":
+				originalWidth = (int) args[0];
+				return widget;
+			case "getOriginalHeight":
+			case "getHeight":
+				return originalHeight;
+			case "setOriginalHeight":
+				originalHeight = (int) args[0];
+				return widget;
+			case "setSize":
+				originalWidth = (int) args[0];
+				originalHeight = (int) args[1];
+				return widget;
+			case "setPos":
+				originalX = (int) args[0];
+				originalY = (int) args[1];
+				return widget;
+			case "getRelativeX":
+				return originalX;
+			case "getRelativeY":
+				return originalY;
+			case "getCanvasLocation":
+				return new Point(getCanvasX(), getCanvasY());
+			case "getScrollY":
+				return scrollY;
+			case "setScrollY":
+				scrollY = (int) args[0];
+				return widget;
+			case "getScrollHeight":
+				return scrollHeight;
+			case "setScrollHeight":
+				scrollHeight = (int) args[0];
+				return widget;
+			case "getDynamicChildren":
+				return dynamicChildren;
+			case "getStaticChildren":
+				return staticChildren;
+			case "getChild":
+			{
+				int index = (int) args[0];
+				return index >= 0 && index < dynamicChildren.length ? dynamicChildren[index] : null;
+			}
+			case "getParent":
+				return parent != null ? parent.widget : null;
+			case "revalidate":
+			case "revalidateScroll":
+				counters.countRevalidate();
+				return null;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "FakeWidget{id=" + id + ", text=" + text + "}";
+			default:
+				throw new UnsupportedOperationException("Widget." + methodName + " is not simulated");
+		}
+	}
+}
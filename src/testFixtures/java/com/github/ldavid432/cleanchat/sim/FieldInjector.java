@@ -0,0 +1,66 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.lang.reflect.Field;
+import javax.inject.Inject;
+
+/**
+ * Fills in @Inject fields by type so classes can be wired up without Guice
+ */
+public class FieldInjector
+{
+	public static <T> T inject(T target, Object... dependencies)
+	{
+		for (Class<?> type = target.getClass(); type != Object.class; type = type.getSuperclass())
+		{
+			for (Field field : type.getDeclaredFields())
+			{
+				if (!field.isAnnotationPresent(Inject.class))
+				{
+					continue;
+				}
+
+				for (Object dependency : dependencies)
+				{
+					if (field.getType().isInstance(dependency))
+					{
+						set(target, field, dependency);
+						break;
+					}
+				}
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * Set a field that has no setter, such as state normally assigned in startUp
+	 */
+	public static void set(Object target, String fieldName, Object value)
+	{
+		for (Class<?> type = target.getClass(); type != Object.class; type = type.getSuperclass())
+		{
+			try
+			{
+				set(target, type.getDeclaredField(fieldName), value);
+				return;
+			}
+			catch (NoSuchFieldException ignored)
+			{
+			}
+		}
+		throw new IllegalArgumentException("No field " + fieldName + " on " + target.getClass().getName());
+	}
+
+	private static void set(Object target, Field field, Object value)
+	{
+		try
+		{
+			field.setAccessible(true);
+			field.set(target, value);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.util.Arrays;
+import lombok.Value;
+
+/**
+ * Cost of replaying a chat history through the plugin, only counting the plugin's own work and not the simulated game's
+ */
+@Value
+public class ReplayReport
+{
+	int messages;
+	long[] rebuildNanos;
+	long setterCalls;
+	long revalidateCalls;
+
+	public int getRebuilds()
+	{
+		return rebuildNanos.length;
+	}
+
+	public long getTotalNanos()
+	{
+		return Arrays.stream(rebuildNanos).sum();
+	}
+
+	public double getMeanNanos()
+	{
+		return rebuildNanos.length > 0 ? (double) getTotalNanos() / rebuildNanos.length : 0;
+	}
+
+	public long getPercentileNanos(double percentile)
+	{
+		if (rebuildNanos.length == 0)
+		{
+			return 0;
+		}
+		long[] sorted = rebuildNanos.clone();
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	public double getSetterCallsPerRebuild()
+	{
+		return rebuildNanos.length > 0 ? (double) setterCalls / rebuildNanos.length : 0;
+	}
+
+	public double getRevalidateCallsPerRebuild()
+	{
+		return rebuildNanos.length > 0 ? (double) revalidateCalls / rebuildNanos.length : 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d rebuilds of %d messages: first %.3fms, mean %.3fms, p50 %.3fms, p99 %.3fms, %.1f setters/rebuild, %.1f revalidates/rebuild",
+			getRebuilds(), messages,
+			rebuildNanos.length > 0 ? rebuildNanos[0] / 1e6 : 0,
+			getMeanNanos() / 1e6,
+			getPercentileNanos(50) / 1e6,
+			getPercentileNanos(99) / 1e6,
+			getSetterCallsPerRebuild(),
+			getRevalidateCallsPerRebuild());
+	}
+}
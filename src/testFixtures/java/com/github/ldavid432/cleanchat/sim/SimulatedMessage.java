@@ -0,0 +1,50 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import javax.annotation.Nullable;
+import lombok.Value;
+import net.runelite.api.ChatMessageType;
+
+/**
+ * A chat message as it arrives from the game, before the chatbox lays it out
+ */
+@Value
+public class SimulatedMessage
+{
+	ChatMessageType type;
+	// Channel name without brackets, null for messages that aren't sent in a channel
+	@Nullable
+	String channel;
+	String name;
+	String text;
+	boolean ranked;
+
+	public static SimulatedMessage publicChat(String name, String text)
+	{
+		return new SimulatedMessage(ChatMessageType.PUBLICCHAT, null, name, text, false);
+	}
+
+	public static SimulatedMessage clanChat(String channel, String name, String text, boolean ranked)
+	{
+		return new SimulatedMessage(ChatMessageType.CLAN_CHAT, channel, name, text, ranked);
+	}
+
+	public static SimulatedMessage guestClanChat(String channel, String name, String text)
+	{
+		return new SimulatedMessage(ChatMessageType.CLAN_GUEST_CHAT, channel, name, text, false);
+	}
+
+	public static SimulatedMessage groupIronChat(String channel, String name, String text)
+	{
+		return new SimulatedMessage(ChatMessageType.CLAN_GIM_CHAT, channel, name, text, false);
+	}
+
+	public static SimulatedMessage friendsChat(String channel, String name, String text, boolean ranked)
+	{
+		return new SimulatedMessage(ChatMessageType.FRIENDSCHAT, channel, name, text, ranked);
+	}
+
+	public static SimulatedMessage gameMessage(String text)
+	{
+		return new SimulatedMessage(ChatMessageType.GAMEMESSAGE, null, "", text, false);
+	}
+}
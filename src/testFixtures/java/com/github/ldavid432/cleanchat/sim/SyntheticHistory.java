@@ -0,0 +1,82 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a repeatable mix of chat resembling a busy clan on a populated world
+ */
+public class SyntheticHistory
+{
+	public static final String CLAN = "Clean Chat Clan";
+	public static final String GUEST_CLAN = "Guest Clan";
+	public static final String FRIENDS_CHAT = "Friends Chat";
+	public static final String GROUP_IRON = "Iron Group";
+
+	private static final String[] NAMES = {"Zezima", "Lynx Titan", "B0aty", "Woox", "Settled", "Framed", "Iron Hyger", "A Friend"};
+	private static final String[] WORDS = {
+		"selling", "buying", "lobsters", "200ea", "anyone", "want", "to", "do", "raids", "later", "gz", "on", "the", "drop",
+		"<col=ff0000>red</col>", "<lt>3", "world", "330", "trade", "me", "what", "a", "spoon", "99", "fishing", "finally",
+	};
+	private static final String[] GAME_MESSAGES = {
+		"Welcome to Old School RuneScape.",
+		"You catch a lobster.",
+		"<col=ef1020>Your reward is: 1 x Dragon pickaxe.</col>",
+		"Your Vorkath kill count is: <col=ff0000>312</col>.",
+	};
+
+	public static List<SimulatedMessage> generate(int count, long seed)
+	{
+		Random random = new Random(seed);
+		List<SimulatedMessage> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			String name = NAMES[random.nextInt(NAMES.length)];
+			String text = sentence(random);
+
+			int roll = random.nextInt(100);
+			if (roll < 35)
+			{
+				messages.add(SimulatedMessage.publicChat(name, text));
+			}
+			else if (roll < 65)
+			{
+				messages.add(SimulatedMessage.clanChat(CLAN, name, text, random.nextBoolean()));
+			}
+			else if (roll < 75)
+			{
+				messages.add(SimulatedMessage.friendsChat(FRIENDS_CHAT, name, text, random.nextBoolean()));
+			}
+			else if (roll < 82)
+			{
+				messages.add(SimulatedMessage.groupIronChat(GROUP_IRON, name, text));
+			}
+			else if (roll < 87)
+			{
+				messages.add(SimulatedMessage.guestClanChat(GUEST_CLAN, name, text));
+			}
+			else
+			{
+				messages.add(SimulatedMessage.gameMessage(GAME_MESSAGES[random.nextInt(GAME_MESSAGES.length)]));
+			}
+		}
+		return messages;
+	}
+
+	private static String sentence(Random random)
+	{
+		// Mostly short messages with the occasional one long enough to wrap a few times
+		int words = random.nextInt(10) == 0 ? 20 + random.nextInt(30) : 1 + random.nextInt(10);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < words; i++)
+		{
+			if (i > 0)
+			{
+				builder.append(' ');
+			}
+			builder.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.ldavid432.cleanchat.sim;
+
+import lombok.Getter;
+
+/**
+ * Counts the widget calls made through the proxies, shared by every widget in a simulated chatbox.
+ * Setters and revalidates are what cost the client work, getters show how many widgets were looked at
+ */
+@Getter
+public class WidgetCounters
+{
+	private long getterCalls = 0;
+	private long setterCalls = 0;
+	private long revalidateCalls = 0;
+
+	void countGetter()
+	{
+		getterCalls++;
+	}
+
+	void countSetter()
+	{
+		setterCalls++;
+	}
+
+	void countRevalidate()
+	{
+		revalidateCalls++;
+	}
+
+	public void reset()
+	{
+		getterCalls = 0;
+		setterCalls = 0;
+		revalidateCalls = 0;
+	}
+}